@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Divider drawing into a recording canvas, one rectangle per divider against the culled and
+ * batched lines of {@link DividerBatch} that {@code DividerDecoration} draws, and the item offsets
+ * of the dividers. The children span a list twice as tall as the clip bounds, so half of them are
+ * culled, and no divider is drawn above a section start, which is looked up in the
+ * {@link SectionIndex} of the header decoration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DividerBenchmark {
+
+    private static final int CHILD_HEIGHT = 100;
+    private static final int WIDTH = 1080;
+    private static final int DIVIDER_HEIGHT = 2;
+
+    @Param({"8", "32", "128"})
+    public int visibleChildren;
+
+    /* items per section, 1 leaves no divider at all */
+    @Param({"1", "4", "64"})
+    public int sectionSize;
+
+    private final RecordingCanvas mCanvas = new RecordingCanvas();
+    private final DividerBatch mBatch = new DividerBatch();
+    private SectionIndex mIndex;
+    private int mItemCount;
+    private float[] mBottoms;
+    private int mClipBottom;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final int sectionSize = this.sectionSize;
+        mIndex = new SectionIndex(new SectionIndex.IdSource() {
+            @Override
+            public long getId(final int position) {
+                return position / sectionSize;
+            }
+        });
+        // the list goes on after the children on screen
+        mItemCount = visibleChildren * 2;
+        mIndex.build(mItemCount);
+
+        mBottoms = new float[visibleChildren];
+        for (int child = 0; child < visibleChildren; child++) {
+            mBottoms[child] = (child + 1) * CHILD_HEIGHT;
+        }
+        mClipBottom = visibleChildren * CHILD_HEIGHT / 2;
+    }
+
+    /**
+     * Every divider drawn with its own call, without culling.
+     */
+    @Benchmark
+    public int rectPerDivider() {
+        final RecordingCanvas canvas = mCanvas;
+        canvas.reset();
+        for (int child = 0; child < visibleChildren; child++) {
+            if (isFollowedByHeader(child)) continue;
+            final float top = mBottoms[child];
+            canvas.drawRect(0, top, WIDTH, top + DIVIDER_HEIGHT);
+        }
+        return canvas.operationCount();
+    }
+
+    /**
+     * Dividers outside the clip bounds skipped and the rest drawn with a single call, the way
+     * {@code DividerDecoration} draws them.
+     */
+    @Benchmark
+    public int culledBatch() {
+        final RecordingCanvas canvas = mCanvas;
+        final DividerBatch batch = mBatch;
+        canvas.reset();
+        if (!batch.setClip(0, 0, WIDTH, mClipBottom)) return 0;
+        for (int child = 0; child < visibleChildren; child++) {
+            if (isFollowedByHeader(child)) continue;
+            final float top = mBottoms[child];
+            if (batch.addDivider(0, top, WIDTH, DIVIDER_HEIGHT, 1f) == DividerBatch.SEPARATE) {
+                canvas.drawRect(0, top, WIDTH, top + DIVIDER_HEIGHT);
+            }
+        }
+        if (!batch.isEmpty()) {
+            canvas.drawLines(batch.points(), 0, batch.size());
+            batch.clear();
+        }
+        return canvas.operationCount();
+    }
+
+    /**
+     * The item offsets of every child, which leave no room for a divider above a section start.
+     */
+    @Benchmark
+    public int itemOffsets() {
+        int offsets = 0;
+        for (int child = 0; child < visibleChildren; child++) {
+            offsets += isFollowedByHeader(child) ? 0 : DIVIDER_HEIGHT;
+        }
+        return offsets;
+    }
+
+    private boolean isFollowedByHeader(final int position) {
+        final int next = position + 1;
+        return next < mItemCount && mIndex.hasHeader(next, mItemCount, false);
+    }
+}
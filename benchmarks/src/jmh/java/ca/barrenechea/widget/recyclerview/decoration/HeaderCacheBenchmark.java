@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Header cache lookups while scrolling: hits on the headers of the visible sections, and misses
+ * that insert a new header and evict the least recently used one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HeaderCacheBenchmark {
+
+    /* the cache bound, headers beyond it are evicted */
+    @Param({"16", "256", "65536"})
+    public int maxHeaders;
+
+    /* the number of headers drawn per frame */
+    @Param({"2", "8"})
+    public int visibleHeaders;
+
+    private final Object mHeader = new Object();
+    private HeaderCache<Object> mCache;
+    private long mNextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mCache = new HeaderCache<>();
+        mCache.setMaxEntries(maxHeaders);
+        for (int id = 0; id < maxHeaders; id++) {
+            mCache.put(id, mHeader, 0, 0);
+        }
+        mNextId = maxHeaders;
+    }
+
+    /**
+     * A frame drawing the headers of cached sections.
+     */
+    @Benchmark
+    public int hit() {
+        mCache.beginFrame();
+        int found = 0;
+        for (int id = 0; id < visibleHeaders; id++) {
+            if (mCache.get(id) != null) found++;
+        }
+        return found;
+    }
+
+    /**
+     * Scrolling to a section that was never cached, which evicts an older header once the cache
+     * is full.
+     */
+    @Benchmark
+    public Object miss() {
+        mCache.beginFrame();
+        final long id = mNextId++;
+        HeaderCache.Entry<Object> entry = mCache.get(id);
+        if (entry == null) {
+            mCache.put(id, mHeader, 0, 0);
+            entry = mCache.peek(id);
+        }
+        return entry;
+    }
+}
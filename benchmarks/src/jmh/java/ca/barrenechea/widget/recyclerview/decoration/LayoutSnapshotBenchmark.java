@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The header and sub-header positions computed for every frame in {@code onDrawOver}, over a
+ * synthetic vertical layout of equally tall children scrolling by a few pixels per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LayoutSnapshotBenchmark {
+
+    private static final int CHILD_HEIGHT = 100;
+    private static final int HEADER_HEIGHT = 60;
+    private static final int SUB_HEADER_HEIGHT = 40;
+    private static final int SCROLL_PER_FRAME = 7;
+
+    @Param({"8", "32", "128"})
+    public int visibleChildren;
+
+    /* items per section, sub-sections hold a quarter of a section */
+    @Param({"1", "4", "64"})
+    public int sectionSize;
+
+    /* 1 for a header adapter, 2 for a double header adapter */
+    @Param({"1", "2"})
+    public int levels;
+
+    private LayoutSnapshot mSnapshot;
+    private int mScroll;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mSnapshot = new LayoutSnapshot(levels);
+        fill(mSnapshot, CHILD_HEIGHT / 2);
+    }
+
+    /**
+     * Only the header layout, from a snapshot that was taken already.
+     */
+    @Benchmark
+    public int compute() {
+        mSnapshot.compute(0, false);
+        return mSnapshot.getPinnedEnd();
+    }
+
+    /**
+     * Taking the snapshot of a new scroll position and laying out its headers, the per-frame work
+     * apart from the framework calls.
+     */
+    @Benchmark
+    public int scrollFrame() {
+        mScroll += SCROLL_PER_FRAME;
+        fill(mSnapshot, mScroll);
+        mSnapshot.compute(0, false);
+        return mSnapshot.getPinnedEnd();
+    }
+
+    /**
+     * Fills the snapshot as if the list was scrolled by the given number of pixels.
+     */
+    private void fill(final LayoutSnapshot snapshot, final int scroll) {
+        final int count = visibleChildren;
+        final int subSectionSize = Math.max(1, sectionSize / 4);
+        final int first = scroll / CHILD_HEIGHT;
+
+        snapshot.reset(count);
+        for (int child = 0; child < count; child++) {
+            final int position = first + child;
+            final boolean sectionStart = position % sectionSize == 0;
+            final boolean subSectionStart = position % sectionSize % subSectionSize == 0;
+
+            snapshot.valid[child] = true;
+            snapshot.positions[child] = position;
+            snapshot.crossStarts[child] = 0;
+            snapshot.starts[child] = position * CHILD_HEIGHT - scroll;
+            snapshot.extents[child] = CHILD_HEIGHT;
+
+            snapshot.headerIds[0][child] = position / sectionSize;
+            snapshot.hasHeader[0][child] = sectionStart;
+            snapshot.headerExtents[0][child] = HEADER_HEIGHT;
+            if (levels > 1) {
+                snapshot.headerIds[1][child] = position / subSectionSize;
+                snapshot.hasHeader[1][child] = subSectionStart;
+                snapshot.headerExtents[1][child] = SUB_HEADER_HEIGHT;
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import java.util.Arrays;
+
+/**
+ * Stands in for the canvas of a hardware accelerated view, which records draw operations into a
+ * display list instead of rasterizing them. Every operation is appended with its arguments, so
+ * the cost grows with the number of operations and the amount of data they carry.
+ */
+final class RecordingCanvas {
+
+    private static final int OP_DRAW_RECT = 1;
+    private static final int OP_DRAW_LINES = 2;
+
+    private float[] mData = new float[256];
+    private int mSize;
+    private int mOperations;
+
+    void drawRect(final float left, final float top, final float right, final float bottom) {
+        ensureCapacity(5);
+        mData[mSize++] = OP_DRAW_RECT;
+        mData[mSize++] = left;
+        mData[mSize++] = top;
+        mData[mSize++] = right;
+        mData[mSize++] = bottom;
+        mOperations++;
+    }
+
+    void drawLines(final float[] points, final int offset, final int count) {
+        ensureCapacity(count + 2);
+        mData[mSize++] = OP_DRAW_LINES;
+        mData[mSize++] = count;
+        System.arraycopy(points, offset, mData, mSize, count);
+        mSize += count;
+        mOperations++;
+    }
+
+    int operationCount() {
+        return mOperations;
+    }
+
+    /**
+     * Discards the recorded operations, like starting a new display list for the next frame.
+     */
+    void reset() {
+        mSize = 0;
+        mOperations = 0;
+    }
+
+    private void ensureCapacity(final int extra) {
+        if (mSize + extra > mData.length) mData = Arrays.copyOf(mData, Math.max(mData.length * 2, mSize + extra));
+    }
+}
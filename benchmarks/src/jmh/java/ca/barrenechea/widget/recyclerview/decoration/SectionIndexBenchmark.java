@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Header id lookups: building the section index, answering the per-child queries of
+ * {@code getItemOffsets} and {@code onDrawOver} from it, and fetching ids from the adapter one at a
+ * time or in batches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SectionIndexBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int listSize;
+
+    /* items per section, 1 gives every item its own header */
+    @Param({"1", "10", "1000"})
+    public int sectionSize;
+
+    private SectionIndex mIndex;
+    private SectionIndex.IdSource mSource;
+    private IdWindow mWindow;
+    private int[] mPositions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final int sectionSize = this.sectionSize;
+        mSource = new SectionIndex.IdSource() {
+            @Override
+            public long getId(final int position) {
+                return position / sectionSize;
+            }
+        };
+        mWindow = new IdWindow(new IdWindow.BatchSource() {
+            @Override
+            public void getIds(final int start, final int count, final long[] out) {
+                for (int i = 0; i < count; i++) {
+                    out[i] = (start + i) / sectionSize;
+                }
+            }
+        });
+        mWindow.reset(listSize);
+
+        mIndex = new SectionIndex(mSource);
+        mIndex.build(listSize);
+
+        final Random random = new Random(42);
+        mPositions = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            mPositions[i] = random.nextInt(listSize);
+        }
+    }
+
+    @Benchmark
+    public int build() {
+        mIndex.invalidate();
+        mIndex.build(listSize);
+        return mIndex.getSectionCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public long indexedId() {
+        long sum = 0;
+        for (final int position : mPositions) {
+            sum += mIndex.getId(position);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int indexedSectionStart() {
+        int starts = 0;
+        for (final int position : mPositions) {
+            if (mIndex.isSectionStart(position)) starts++;
+        }
+        return starts;
+    }
+
+    /**
+     * The lookup {@code hasHeader} used to do, comparing the ids of an item and its predecessor.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int adapterSectionStart() {
+        int starts = 0;
+        for (final int position : mPositions) {
+            if (position == 0 || mSource.getId(position) != mSource.getId(position - 1)) starts++;
+        }
+        return starts;
+    }
+
+    /**
+     * Walks the whole list one id at a time, like building the index from a plain adapter.
+     */
+    @Benchmark
+    public long sequentialIds() {
+        long sum = 0;
+        for (int position = 0; position < listSize; position++) {
+            sum += mSource.getId(position);
+        }
+        return sum;
+    }
+
+    /**
+     * Walks the whole list through the id window, like building the index from a batch adapter.
+     */
+    @Benchmark
+    public long batchedIds() {
+        mWindow.reset(listSize);
+        long sum = 0;
+        for (int position = 0; position < listSize; position++) {
+            sum += mWindow.getId(position);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * A {@link DoubleHeaderAdapter} that can look up the header and sub-header ids of a range of items
+ * at once, see {@link BatchHeaderAdapter}.
+ *
+ * @param <H> the header view holder
+ * @param <S> the sub-header view holder
+ */
+public interface BatchDoubleHeaderAdapter<H extends RecyclerView.ViewHolder, S extends RecyclerView.ViewHolder>
+        extends DoubleHeaderAdapter<H, S>, BatchHeaderAdapter<H> {
+
+    /**
+     * Writes the sub-header ids of the items from {@code start} to {@code start + count - 1} to
+     * the beginning of {@code out}.
+     *
+     * @param start the position of the first item
+     * @param count the number of items
+     * @param out   the array receiving the sub-header ids, {@link HeaderDecoration#UNKNOWN_ID} for items
+     *              that are not loaded yet
+     */
+    void getSubHeaderIds(int start, int count, long[] out);
+}
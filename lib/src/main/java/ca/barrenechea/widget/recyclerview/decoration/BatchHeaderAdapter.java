@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * A {@link HeaderAdapter} that can look up the header ids of a range of items at once, for
+ * adapters where every single lookup is expensive, e.g. adapters backed by a cursor.
+ * <p>
+ * The {@link HeaderDecoration} reads the header ids in batches through
+ * {@link #getHeaderIds(int, int, long[])} instead of calling {@link #getHeaderId(int)} for every
+ * item.
+ *
+ * @param <T> the header view holder
+ */
+public interface BatchHeaderAdapter<T extends RecyclerView.ViewHolder> extends HeaderAdapter<T> {
+
+    /**
+     * Writes the header ids of the items from {@code start} to {@code start + count - 1} to the
+     * beginning of {@code out}.
+     *
+     * @param start the position of the first item
+     * @param count the number of items
+     * @param out   the array receiving the header ids, {@link HeaderDecoration#UNKNOWN_ID} for items
+     *              that are not loaded yet
+     */
+    void getHeaderIds(int start, int count, long[] out);
+
+}
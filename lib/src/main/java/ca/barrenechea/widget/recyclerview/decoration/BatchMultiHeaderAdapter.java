@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.barrenechea.widget.recyclerview.decoration;
+
+/**
+ * A {@link MultiHeaderAdapter} that can look up the header ids of a range of items at once, see
+ * {@link BatchHeaderAdapter}.
+ */
+public interface BatchMultiHeaderAdapter extends MultiHeaderAdapter {
+
+    /**
+     * Writes the header ids of the given level of the items from {@code start} to
+     * {@code start + count - 1} to the beginning of {@code out}.
+     *
+     * @param level the header level
+     * @param start the position of the first item
+     * @param count the number of items
+     * @param out   the array receiving the header ids, {@link HeaderDecoration#UNKNOWN_ID} for items
+     *              that are not loaded yet
+     */
+    void getHeaderIds(int level, int start, int count, long[] out);
+}
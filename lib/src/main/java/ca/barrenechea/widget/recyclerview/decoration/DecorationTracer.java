@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives the begin and end of the work done by the decorations, so that it shows up as named
+ * sections in system traces. See {@link SystraceTracer} for a tracer writing to
+ * {@link android.os.Trace}.
+ * <p>
+ * Sections are always ended on the thread that began them, in reverse order. Section names are
+ * only built while a tracer is set.
+ */
+public interface DecorationTracer {
+
+    /**
+     * Begins a section, which lasts until the matching {@link #endSection()}.
+     *
+     * @param name the section name, tagged with the header id where there is one
+     */
+    void beginSection(@NonNull String name);
+
+    /**
+     * Ends the most recently begun section.
+     */
+    void endSection();
+}
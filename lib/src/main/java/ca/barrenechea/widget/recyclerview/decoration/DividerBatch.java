@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 Eduardo Barrenechea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+/**
+ * Collects horizontal divider segments into a reusable point array, in the layout expected by
+ * Canvas.drawLines, so that every divider of a frame can be drawn with a single call.
+ * <p>
+ * Dividers are culled against the clip bounds first. Only opaque dividers lying entirely after the
+ * leading clip edges are batched, the others have to be drawn on their own.
+ */
+final class DividerBatch {
+
+    /**
+     * The divider is outside the clip bounds, invisible or empty and is not drawn.
+     */
+    static final int CULLED = 0;
+    /**
+     * The divider has been added to the batch.
+     */
+    static final int BATCHED = 1;
+    /**
+     * The divider is translucent or crosses a leading clip edge and has to be drawn on its own.
+     */
+    static final int SEPARATE = 2;
+
+    private static final int POINTS_PER_LINE = 4;
+
+    private float[] mPoints = new float[16 * POINTS_PER_LINE];
+    private int mCount;
+
+    private int mClipLeft;
+    private int mClipTop;
+    private int mClipRight;
+    private int mClipBottom;
+
+    /**
+     * Sets the bounds dividers are culled against.
+     *
+     * @return false if the bounds are empty and no divider can be drawn
+     */
+    boolean setClip(int left, int top, int right, int bottom) {
+        mClipLeft = left;
+        mClipTop = top;
+        mClipRight = right;
+        mClipBottom = bottom;
+        return left < right && top < bottom;
+    }
+
+    /**
+     * Culls a divider against the clip bounds and batches it if it can be drawn with the others.
+     *
+     * @param left   the left edge of the divider
+     * @param top    the top edge of the divider
+     * @param right  the right edge of the divider
+     * @param height the divider height
+     * @param alpha  the alpha of the child the divider belongs to
+     * @return {@link #CULLED}, {@link #BATCHED} or {@link #SEPARATE}
+     */
+    int addDivider(float left, float top, float right, float height, float alpha) {
+        final float bottom = top + height;
+        if (alpha <= 0f || bottom <= mClipTop || top >= mClipBottom
+                || right <= mClipLeft || left >= mClipRight || left >= right) {
+            return CULLED;
+        }
+        if (alpha < 1f || isClipped(left, top)) return SEPARATE;
+        add(left, right, top + height / 2f);
+        return BATCHED;
+    }
+
+    /**
+     * @return true if a divider starting at the given edges crosses a leading clip edge and has to
+     * be clipped when drawn
+     */
+    boolean isClipped(float left, float top) {
+        return top < mClipTop || left < mClipLeft;
+    }
+
+    /**
+     * Adds a horizontal line, which is drawn as a rectangle of the paint's stroke width centred on
+     * the given y coordinate.
+     */
+    void add(float left, float right, float y) {
+        if (mCount + POINTS_PER_LINE > mPoints.length) {
+            float[] points = new float[mPoints.length * 2];
+            System.arraycopy(mPoints, 0, points, 0, mCount);
+            mPoints = points;
+        }
+        mPoints[mCount++] = left;
+        mPoints[mCount++] = y;
+        mPoints[mCount++] = right;
+        mPoints[mCount++] = y;
+    }
+
+    /**
+     * @return the point array, only the first {@link #size()} values are valid
+     */
+    float[] points() {
+        return mPoints;
+    }
+
+    /**
+     * @return the number of valid values in the point array
+     */
+    int size() {
+        return mCount;
+    }
+
+    boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    void clear() {
+        mCount = 0;
+    }
+}
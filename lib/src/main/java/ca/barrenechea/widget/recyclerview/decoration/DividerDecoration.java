@@ -37,14 +37,41 @@ public class DividerDecoration extends RecyclerView.ItemDecoration {
     private int mHeight;
     private int mLPadding;
     private int mRPadding;
+    private boolean mDrawUnderItems;
+    private HeaderDecoration mHeaderDecoration;
+    private DecorationTracer mTracer;
     private Paint mPaint;
 
-    private DividerDecoration(int height, int lPadding, int rPadding, int colour) {
+    /* dividers of translucent children are drawn on their own with this paint */
+    private Paint mAlphaPaint;
+    private int mColourAlpha;
+
+    private final DividerBatch mBatch = new DividerBatch();
+    private final Rect mClipBounds = new Rect();
+
+    private DividerDecoration(int height, int lPadding, int rPadding, int colour, boolean drawUnderItems,
+                              HeaderDecoration headerDecoration, DecorationTracer tracer) {
         mHeight = height;
         mLPadding = lPadding;
         mRPadding = rPadding;
+        mDrawUnderItems = drawUnderItems;
+        mHeaderDecoration = headerDecoration;
+        mTracer = tracer;
         mPaint = new Paint();
         mPaint.setColor(colour);
+        mPaint.setStrokeWidth(height);
+        mPaint.setStrokeCap(Paint.Cap.BUTT);
+        mAlphaPaint = new Paint();
+        mAlphaPaint.setColor(colour);
+        mColourAlpha = mAlphaPaint.getAlpha();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        if (mDrawUnderItems) traceDrawDividers(c, parent, "DividerDecoration.onDraw");
     }
 
     /**
@@ -52,28 +79,77 @@ private DividerDecoration(int height, int lPadding, int rPadding, int colour) {
      */
     @Override
     public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
-        int count = parent.getChildCount();
+        if (!mDrawUnderItems) traceDrawDividers(c, parent, "DividerDecoration.onDrawOver");
+    }
+
+    private void traceDrawDividers(Canvas c, RecyclerView parent, String section) {
+        if (mTracer == null) {
+            drawDividers(c, parent);
+            return;
+        }
+        mTracer.beginSection(section);
+        drawDividers(c, parent);
+        mTracer.endSection();
+    }
+
+    /**
+     * Draws the divider below every child that intersects the clip bounds. Dividers follow the
+     * translation of their child, and all opaque dividers are drawn with a single call.
+     * <p>
+     * With a header decoration, children followed by a header get no divider. Dividers drawn over
+     * the items are clipped to the area after the pinned headers along the scroll axis, dividers
+     * drawn under the items are covered by the headers anyway.
+     */
+    private void drawDividers(Canvas c, RecyclerView parent) {
+        if (mHeight <= 0 || !c.getClipBounds(mClipBounds)) return;
+        if (mHeaderDecoration != null && !mDrawUnderItems) {
+            final int pinnedEnd = mHeaderDecoration.getPinnedHeaderEnd(parent);
+            if (mHeaderDecoration.isVertical()) {
+                mClipBounds.top = Math.max(mClipBounds.top, pinnedEnd);
+            } else {
+                mClipBounds.left = Math.max(mClipBounds.left, pinnedEnd);
+            }
+        }
+        if (!mBatch.setClip(mClipBounds.left, mClipBounds.top, mClipBounds.right, mClipBounds.bottom)) return;
 
+        int count = parent.getChildCount();
         for (int i = 0; i < count; i++) {
             final View child = parent.getChildAt(i);
-            final int top = child.getBottom();
-            final int bottom = top + mHeight;
+            final float alpha = child.getAlpha();
+            if (alpha <= 0f || isFollowedByHeader(parent, child)) continue;
+
+            final float top = child.getBottom() + child.getTranslationY();
+            final float left = child.getLeft() + child.getTranslationX() + mLPadding;
+            final float right = child.getRight() + child.getTranslationX() - mRPadding;
+            if (mBatch.addDivider(left, top, right, mHeight, alpha) != DividerBatch.SEPARATE) continue;
 
-            int left = child.getLeft() + mLPadding;
-            int right = child.getRight() - mRPadding;
+            final boolean clipped = mBatch.isClipped(left, top);
+            if (clipped) {
+                c.save();
+                c.clipRect(mClipBounds.left, mClipBounds.top, mClipBounds.right, mClipBounds.bottom);
+            }
+            mAlphaPaint.setAlpha((int) (mColourAlpha * alpha));
+            c.drawRect(left, top, right, top + mHeight, mAlphaPaint);
+            if (clipped) c.restore();
+        }
 
-            c.save();
-            c.drawRect(left, top, right, bottom, mPaint);
-            c.restore();
+        if (!mBatch.isEmpty()) {
+            c.drawLines(mBatch.points(), 0, mBatch.size(), mPaint);
+            mBatch.clear();
         }
     }
 
+    private boolean isFollowedByHeader(RecyclerView parent, View child) {
+        return mHeaderDecoration != null
+                && mHeaderDecoration.isFollowedByHeader(parent, parent.getChildAdapterPosition(child));
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void getItemOffsets(Rect outRect, View view, RecyclerView parent, RecyclerView.State state) {
-        outRect.set(0, 0, 0, mHeight);
+        outRect.set(0, 0, 0, isFollowedByHeader(parent, view) ? 0 : mHeight);
     }
 
     /**
@@ -85,6 +161,9 @@ public static class Builder {
         private int mLPadding;
         private int mRPadding;
         private int mColour;
+        private boolean mDrawUnderItems;
+        private HeaderDecoration mHeaderDecoration;
+        private DecorationTracer mTracer;
 
         public Builder(Context context) {
             mResources = context.getResources();
@@ -204,12 +283,49 @@ public Builder setColor(@ColorInt int color) {
             return this;
         }
 
+        /**
+         * Draws the dividers below the items instead of on top of them, which avoids drawing over
+         * opaque item backgrounds
+         * @param drawUnderItems true to draw the dividers below the items
+         * @return the current instance of the Builder
+         */
+        public Builder setDrawUnderItems(boolean drawUnderItems) {
+            mDrawUnderItems = drawUnderItems;
+
+            return this;
+        }
+
+        /**
+         * Makes the dividers aware of the sections of a header decoration: the last item of a
+         * section gets no divider, and no divider is drawn over the pinned headers
+         * @param headerDecoration the header decoration of the same list
+         * @return the current instance of the Builder
+         */
+        public Builder setHeaderDecoration(HeaderDecoration headerDecoration) {
+            mHeaderDecoration = headerDecoration;
+
+            return this;
+        }
+
+        /**
+         * Sets a tracer receiving a section for every time the dividers are drawn, see
+         * {@link SystraceTracer}
+         * @param tracer the tracer, null to disable tracing
+         * @return the current instance of the Builder
+         */
+        public Builder setTracer(DecorationTracer tracer) {
+            mTracer = tracer;
+
+            return this;
+        }
+
         /**
          * Instantiates a DividerDecoration with the specified parameters.
          * @return a properly initialized DividerDecoration instance
          */
         public DividerDecoration build() {
-            return new DividerDecoration(mHeight, mLPadding, mRPadding, mColour);
+            return new DividerDecoration(mHeight, mLPadding, mRPadding, mColour, mDrawUnderItems, mHeaderDecoration,
+                    mTracer);
         }
     }
 }
@@ -32,7 +32,8 @@
      * Returns the sub-header id for the item at the given position.
      *
      * @param position the item position
-     * @return the sub-header id
+     * @return the sub-header id, or {@link HeaderDecoration#UNKNOWN_ID} if the item is not loaded
+     * yet, see {@link #getHeaderId(int)}
      */
     long getSubHeaderId(int position);
 
@@ -28,9 +28,13 @@
 
     /**
      * Returns the header id for the item at the given position.
+     * <p>
+     * Adapters backed by paged data must not load data here. For items that are not loaded yet
+     * they return {@link HeaderDecoration#UNKNOWN_ID} and notify the changed range once the page
+     * arrives.
      *
      * @param position the item position
-     * @return the header id
+     * @return the header id, or {@link HeaderDecoration#UNKNOWN_ID} if the item is not loaded yet
      */
     long getHeaderId(int position);
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+/**
+ * Presents a {@link HeaderAdapter} or {@link DoubleHeaderAdapter} as a one or two level
+ * {@link MultiHeaderAdapter}, including their typed and batch variants.
+ */
+final class HeaderAdapterLevels implements BatchMultiHeaderAdapter {
+
+    @NonNull
+    private final HeaderAdapter mHeaderAdapter;
+    @Nullable
+    private final DoubleHeaderAdapter mDoubleHeaderAdapter;
+
+    HeaderAdapterLevels(@NonNull final HeaderAdapter adapter) {
+        mHeaderAdapter = adapter;
+        mDoubleHeaderAdapter = adapter instanceof DoubleHeaderAdapter ? (DoubleHeaderAdapter) adapter : null;
+    }
+
+    /**
+     * @return true if the ids of the given level can be fetched in batches
+     */
+    boolean isBatch(final int level) {
+        return level == 0 ? mHeaderAdapter instanceof BatchHeaderAdapter : mHeaderAdapter instanceof BatchDoubleHeaderAdapter;
+    }
+
+    @Override
+    public int getHeaderLevelCount() {
+        return mDoubleHeaderAdapter != null ? 2 : 1;
+    }
+
+    @Override
+    public long getHeaderId(final int level, final int position) {
+        //noinspection ConstantConditions
+        return level == 0 ? mHeaderAdapter.getHeaderId(position) : mDoubleHeaderAdapter.getSubHeaderId(position);
+    }
+
+    @Override
+    public void getHeaderIds(final int level, final int start, final int count, final long[] out) {
+        if (level == 0) {
+            ((BatchHeaderAdapter) mHeaderAdapter).getHeaderIds(start, count, out);
+        } else {
+            ((BatchDoubleHeaderAdapter) mHeaderAdapter).getSubHeaderIds(start, count, out);
+        }
+    }
+
+    @Override
+    public int getHeaderViewType(final int level, final int position) {
+        if (level == 0) {
+            return mHeaderAdapter instanceof TypedHeaderAdapter
+                    ? ((TypedHeaderAdapter) mHeaderAdapter).getHeaderViewType(position) : 0;
+        }
+        return mHeaderAdapter instanceof TypedDoubleHeaderAdapter
+                ? ((TypedDoubleHeaderAdapter) mHeaderAdapter).getSubHeaderViewType(position) : 0;
+    }
+
+    @Override
+    public RecyclerView.ViewHolder onCreateHeaderViewHolder(final ViewGroup parent, final int level, final int viewType) {
+        if (level == 0) {
+            return mHeaderAdapter instanceof TypedHeaderAdapter
+                    ? ((TypedHeaderAdapter) mHeaderAdapter).onCreateHeaderViewHolder(parent, viewType)
+                    : mHeaderAdapter.onCreateHeaderViewHolder(parent);
+        }
+        //noinspection ConstantConditions
+        return mHeaderAdapter instanceof TypedDoubleHeaderAdapter
+                ? ((TypedDoubleHeaderAdapter) mHeaderAdapter).onCreateSubHeaderHolder(parent, viewType)
+                : mDoubleHeaderAdapter.onCreateSubHeaderHolder(parent);
+    }
+
+    @Override
+    public void onBindHeaderViewHolder(final RecyclerView.ViewHolder viewHolder, final int level, final int position) {
+        if (level == 0) {
+            //noinspection unchecked
+            mHeaderAdapter.onBindHeaderViewHolder(viewHolder, position);
+        } else {
+            //noinspection unchecked,ConstantConditions
+            mDoubleHeaderAdapter.onBindSubHeaderHolder(viewHolder, position);
+        }
+    }
+}
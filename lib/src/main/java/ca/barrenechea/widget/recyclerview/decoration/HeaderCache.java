@@ -0,0 +1,283 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+/**
+ * A least-recently-used cache of header holders keyed by header id.
+ * <p>
+ * The cache can be bounded by the number of entries and by an estimated size in bytes. Entries
+ * that were used during the current or the previous frame are pinned, they are on screen and are
+ * never evicted, even if that means the cache temporarily exceeds its bounds.
+ *
+ * @param <V> the cached value type
+ */
+final class HeaderCache<V> {
+
+    static final int UNBOUNDED_ENTRIES = Integer.MAX_VALUE;
+    static final long UNBOUNDED_BYTES = Long.MAX_VALUE;
+
+    /**
+     * Notified when an entry is evicted to respect the cache bounds.
+     *
+     * @param <V> the cached value type
+     */
+    interface EvictionListener<V> {
+        void onEvicted(long id, V value, int viewType);
+    }
+
+    private final LongObjectMap<Entry<V>> mEntries = new LongObjectMap<>();
+
+    /* most recently used entry */
+    private Entry<V> mHead;
+    /* least recently used entry */
+    private Entry<V> mTail;
+
+    private int mMaxEntries = UNBOUNDED_ENTRIES;
+    private long mMaxBytes = UNBOUNDED_BYTES;
+    private long mBytes;
+
+    private int mFrame;
+
+    private EvictionListener<V> mEvictionListener;
+
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    /**
+     * @param id the header id
+     * @return the cache entry or null if the id is not cached
+     */
+    Entry<V> get(final long id) {
+        final Entry<V> entry = mEntries.get(id);
+        if (entry == null) {
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        entry.frame = mFrame;
+        moveToFront(entry);
+        return entry;
+    }
+
+    /**
+     * Checks if an id is cached without counting a hit or a miss and without touching its recency.
+     *
+     * @param id the header id
+     * @return true if the id is cached
+     */
+    boolean contains(final long id) {
+        return mEntries.get(id) != null;
+    }
+
+    /**
+     * Looks up an id without counting a hit or a miss and without touching its recency.
+     *
+     * @param id the header id
+     * @return the cache entry or null if the id is not cached
+     */
+    Entry<V> peek(final long id) {
+        return mEntries.get(id);
+    }
+
+    /**
+     * Caches a value, evicting least recently used entries if the cache is over its bounds.
+     *
+     * @param id       the header id
+     * @param value    the value to cache
+     * @param viewType the view type of the value, handed back on eviction
+     * @param bytes    the estimated size of the value in bytes
+     */
+    void put(final long id, final V value, final int viewType, final int bytes) {
+        remove(id);
+
+        final Entry<V> entry = new Entry<>(id, value, viewType, bytes);
+        entry.frame = mFrame;
+        mEntries.put(id, entry);
+        mBytes += bytes;
+        linkFirst(entry);
+
+        trim();
+    }
+
+    /**
+     * Flags a cached value as outdated, it has to be rebound before it is used again.
+     *
+     * @param id the header id
+     * @return true if the id is cached
+     */
+    boolean markDirty(final long id) {
+        final Entry<V> entry = mEntries.get(id);
+        if (entry == null) return false;
+        entry.dirty = true;
+        return true;
+    }
+
+    /**
+     * Flags every cached value as outdated, used when it is unknown which ones changed.
+     */
+    void markAllDirty() {
+        for (Entry<V> entry = mHead; entry != null; entry = entry.next) {
+            entry.dirty = true;
+        }
+    }
+
+    /**
+     * Flags a rebound value as up to date and updates its estimated size.
+     *
+     * @param entry the rebound entry
+     * @param bytes the new estimated size of the value in bytes
+     */
+    void markClean(final Entry<V> entry, final int bytes) {
+        entry.dirty = false;
+        mBytes += bytes - entry.bytes;
+        entry.bytes = bytes;
+        trim();
+    }
+
+    /**
+     * @param id the header id
+     * @return the removed value, or null if the id was not cached
+     */
+    V remove(final long id) {
+        final Entry<V> entry = mEntries.remove(id);
+        if (entry == null) return null;
+        unlink(entry);
+        mBytes -= entry.bytes;
+        return entry.value;
+    }
+
+    /**
+     * @return the most recently used entry, or null if the cache is empty. Less recently used
+     * entries follow through {@link Entry#next}.
+     */
+    Entry<V> getMostRecent() {
+        return mHead;
+    }
+
+    void clear() {
+        mEntries.clear();
+        mHead = null;
+        mTail = null;
+        mBytes = 0;
+    }
+
+    /**
+     * Starts a new frame. Entries used during this and the previous frame are pinned.
+     */
+    void beginFrame() {
+        mFrame++;
+    }
+
+    void setEvictionListener(final EvictionListener<V> listener) {
+        mEvictionListener = listener;
+    }
+
+    void setMaxEntries(final int maxEntries) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be positive");
+        mMaxEntries = maxEntries;
+        trim();
+    }
+
+    void setMaxBytes(final long maxBytes) {
+        if (maxBytes < 1) throw new IllegalArgumentException("maxBytes must be positive");
+        mMaxBytes = maxBytes;
+        trim();
+    }
+
+    int size() {
+        return mEntries.size();
+    }
+
+    long bytes() {
+        return mBytes;
+    }
+
+    long hitCount() {
+        return mHits;
+    }
+
+    long missCount() {
+        return mMisses;
+    }
+
+    long evictionCount() {
+        return mEvictions;
+    }
+
+    private boolean isOverBounds() {
+        return mEntries.size() > mMaxEntries || mBytes > mMaxBytes;
+    }
+
+    private boolean isPinned(final Entry<V> entry) {
+        return mFrame - entry.frame <= 1;
+    }
+
+    private void trim() {
+        Entry<V> entry = mTail;
+        while (entry != null && isOverBounds()) {
+            final Entry<V> previous = entry.previous;
+            if (!isPinned(entry)) {
+                remove(entry.id);
+                mEvictions++;
+                if (mEvictionListener != null) mEvictionListener.onEvicted(entry.id, entry.value, entry.viewType);
+            }
+            entry = previous;
+        }
+    }
+
+    private void moveToFront(final Entry<V> entry) {
+        if (entry == mHead) return;
+        unlink(entry);
+        linkFirst(entry);
+    }
+
+    private void linkFirst(final Entry<V> entry) {
+        entry.previous = null;
+        entry.next = mHead;
+        if (mHead != null) mHead.previous = entry;
+        mHead = entry;
+        if (mTail == null) mTail = entry;
+    }
+
+    private void unlink(final Entry<V> entry) {
+        if (entry.previous != null) entry.previous.next = entry.next;
+        else mHead = entry.next;
+        if (entry.next != null) entry.next.previous = entry.previous;
+        else mTail = entry.previous;
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    static final class Entry<V> {
+        final long id;
+        final V value;
+        final int viewType;
+        int bytes;
+        boolean dirty;
+        int frame;
+        Entry<V> previous;
+        Entry<V> next;
+
+        Entry(final long id, final V value, final int viewType, final int bytes) {
+            this.id = id;
+            this.value = value;
+            this.viewType = viewType;
+            this.bytes = bytes;
+        }
+    }
+}
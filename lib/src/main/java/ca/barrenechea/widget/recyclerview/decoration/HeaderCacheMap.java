@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A live {@link Map} view of the level 0 header cache, backing the deprecated
+ * {@link HeaderDecoration#mHeaderCache} field of subclasses written against the old cache.
+ * <p>
+ * Reads do not count as a use of the header. Removed headers are recycled like evicted ones.
+ * Headers put into the map are cached with the header view type of their section, or are never
+ * reused if no section has their id.
+ */
+final class HeaderCacheMap extends AbstractMap<Long, RecyclerView.ViewHolder> {
+
+    @NonNull
+    private final HeaderDecoration mDecoration;
+    @NonNull
+    private final HeaderLevel mLevel;
+    private final Set<Map.Entry<Long, RecyclerView.ViewHolder>> mEntrySet = new EntrySet();
+
+    HeaderCacheMap(@NonNull final HeaderDecoration decoration, @NonNull final HeaderLevel level) {
+        mDecoration = decoration;
+        mLevel = level;
+    }
+
+    @Override
+    public int size() {
+        return mLevel.cache.size();
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return key instanceof Long && mLevel.cache.contains((Long) key);
+    }
+
+    @Override
+    public RecyclerView.ViewHolder get(final Object key) {
+        if (!(key instanceof Long)) return null;
+        final HeaderCache.Entry<RecyclerView.ViewHolder> entry = mLevel.cache.peek((Long) key);
+        return entry != null ? entry.value : null;
+    }
+
+    @Override
+    public RecyclerView.ViewHolder put(final Long key, final RecyclerView.ViewHolder value) {
+        final RecyclerView.ViewHolder previous = get(key);
+        final int viewType = mDecoration.getHeaderViewType(mLevel, key);
+        mLevel.cache.put(key, value, viewType, mDecoration.estimateSize(value.itemView));
+        return previous;
+    }
+
+    @Override
+    public RecyclerView.ViewHolder remove(final Object key) {
+        final RecyclerView.ViewHolder previous = get(key);
+        if (previous != null) mLevel.recycle((Long) key);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        mLevel.clear();
+    }
+
+    @NonNull
+    @Override
+    public Set<Map.Entry<Long, RecyclerView.ViewHolder>> entrySet() {
+        return mEntrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<Long, RecyclerView.ViewHolder>> {
+
+        @Override
+        public int size() {
+            return mLevel.cache.size();
+        }
+
+        @NonNull
+        @Override
+        public Iterator<Map.Entry<Long, RecyclerView.ViewHolder>> iterator() {
+            return new Iterator<Map.Entry<Long, RecyclerView.ViewHolder>>() {
+                private HeaderCache.Entry<RecyclerView.ViewHolder> mNext = mLevel.cache.getMostRecent();
+                private HeaderCache.Entry<RecyclerView.ViewHolder> mLast;
+
+                @Override
+                public boolean hasNext() {
+                    return mNext != null;
+                }
+
+                @Override
+                public Map.Entry<Long, RecyclerView.ViewHolder> next() {
+                    if (mNext == null) throw new NoSuchElementException();
+                    mLast = mNext;
+                    mNext = mNext.next;
+                    return new SimpleImmutableEntry<>(mLast.id, mLast.value);
+                }
+
+                @Override
+                public void remove() {
+                    if (mLast == null) throw new IllegalStateException();
+                    mLevel.recycle(mLast.id);
+                    mLast = null;
+                }
+            };
+        }
+    }
+}
@@ -22,11 +22,16 @@
 import android.support.annotation.DimenRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.view.HapticFeedbackConstants;
+import android.view.SoundEffectConstants;
 import android.view.View;
 import android.view.ViewGroup;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
 
 public class HeaderDecoration extends RecyclerView.ItemDecoration {
@@ -36,18 +41,150 @@ public class HeaderDecoration extends RecyclerView.ItemDecoration {
      */
     public static final int NO_MARGIN_TOP = -1;
 
-    /* default header */
-    @NonNull
+    /**
+     * The header id of an item that is not loaded yet, distinct from {@link RecyclerView#NO_ID}.
+     * Such a placeholder gets no header and nothing is created or bound for it. Where a run of
+     * placeholders starts, the estimated height of a header is reserved, see
+     * {@link #setPlaceholderHeaderHeight(int, int)}. Once the page arrives and the adapter
+     * notifies the change, only the sections of the changed range are looked up again.
+     */
+    public static final long UNKNOWN_ID = Long.MIN_VALUE;
+
+    /**
+     * Headers are drawn from their live view hierarchy on every frame
+     */
+    public static final int RENDER_LIVE = 0;
+
+    /**
+     * Headers are rendered once into a cached bitmap which is drawn on every frame while the list
+     * is scrolling, and drawn live once it stopped
+     */
+    public static final int RENDER_RASTER = 1;
+
+    /**
+     * Headers are drawn from their cached bitmap while the list is flinging and live otherwise
+     */
+    public static final int RENDER_RASTER_WHILE_SETTLING = 2;
+
+    private static final long DEFAULT_PREFETCH_BUDGET_NANOS = 4 * 1000 * 1000;
+    private static final long INDEX_BUILD_BUDGET_NANOS = 4 * 1000 * 1000;
+
+    private static final int NO_FRAME = -1;
+
+    /* headers cached beyond those drawn and prefetched, so that scrolling back and forth does not rebind */
+    private static final int CACHED_HEADERS_SLACK = 4;
+
+    private static final int PASS_NONE = 0;
+    private static final int PASS_LAYOUT = 1;
+    private static final int PASS_DRAW = 2;
+
+    /* the adapter passed to the single and double header constructors, null for a MultiHeaderAdapter */
+    @Nullable
     protected HeaderAdapter headerAdapter;
+    /**
+     * @deprecated the level 0 headers are kept in a bounded cache now, this is a live view of it.
+     * Assigning another map has no effect, use {@link #clearCache()} to drop the cached headers.
+     */
+    @Deprecated
     @NonNull
     protected Map<Long, RecyclerView.ViewHolder> mHeaderCache;
 
-    /* sub-header */
+    /* header levels, level 0 is the outermost header and level 1 the sub-header of double header adapters */
+    @NonNull
+    private final MultiHeaderAdapter mAdapter;
+    @NonNull
+    private final HeaderLevel[] mLevels;
+
+    /* the list the decoration was last used with and the adapter whose notifications keep the section indexes up to date */
+    @Nullable
+    private RecyclerView mRecyclerView;
+    @Nullable
+    private RecyclerView.Adapter mObservedAdapter;
+    private final RecyclerView.AdapterDataObserver mDataObserver = new SectionIndexObserver();
+    /* stops observing the adapter while the list is detached from its window, so the adapter does not leak the list */
+    private final View.OnAttachStateChangeListener mAttachListener = new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(final View v) {
+            // observing starts again with the next layout or draw pass
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(final View v) {
+            stopObservingAdapter();
+            releaseRasters();
+            if (mPrefetcher != null) mPrefetcher.detach();
+        }
+    };
+    /* releases the header rasters as soon as the list stops moving */
+    private final RecyclerView.OnScrollListener mScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(final RecyclerView recyclerView, final int newState) {
+            if (!isRasterizing(newState)) releaseRasters();
+        }
+    };
+    /* builds the section indexes while the main thread is idle */
+    @NonNull
+    private final SectionIndexBuilder mIndexBuilder;
+
+    /* item offsets depend on the header sizes, refresh them once a rebound header changed its size */
+    private boolean mInvalidateItemDecorationsPosted;
+    private final Runnable mInvalidateItemDecorations = new Runnable() {
+        @Override
+        public void run() {
+            mInvalidateItemDecorationsPosted = false;
+            if (mRecyclerView != null) mRecyclerView.invalidateItemDecorations();
+        }
+    };
+
+    /* per-frame layout of the visible children and the headers attached to them */
+    @NonNull
+    private final LayoutSnapshot mSnapshot;
+    /* counts the frames drawn, starting in onDraw, and the frame the snapshot was taken in */
+    private int mFrame;
+    private int mSnapshotFrame = NO_FRAME;
+
+    private int mRenderMode = RENDER_LIVE;
+
+    /* creates upcoming headers while the main thread is idle, null if disabled */
+    @Nullable
+    private HeaderPrefetcher mPrefetcher;
+    private int mPrefetchCount;
+    private long mPrefetchBudgetNanos = DEFAULT_PREFETCH_BUDGET_NANOS;
+
+    /* true until a cache limit is set, the limit then follows the number of headers drawn */
+    private boolean mAutoMaxCachedHeaders = true;
+
+    /* collects timings and counters, null unless enabled */
+    @Nullable
+    private HeaderStats mStats;
+    /* receives trace sections, null unless set */
+    @Nullable
+    private DecorationTracer mTracer;
+    /* reports header work inside draw and layout passes, null unless set */
     @Nullable
-    private DoubleHeaderAdapter subHeaderAdapter;
+    private HeaderPolicy mPolicy;
+    /* the pass currently running and the header ids it requested from the adapter */
+    private int mPass = PASS_NONE;
+    private int mPassIdLookups;
+
+    /* the bounds of the headers drawn in the last frame, used to hit test touches */
+    @NonNull
+    private final HeaderHitRegions mHitRegions = new HeaderHitRegions();
+    /* dispatches header clicks, null if no header listener is set */
+    @Nullable
+    private HeaderTouchListener mTouchListener;
+    @Nullable
+    private OnHeaderClickListener mOnHeaderClickListener;
     @Nullable
-    private Map<Long, RecyclerView.ViewHolder> subHeaderCache;
+    private OnHeaderLongClickListener mOnHeaderLongClickListener;
 
+    /* the span sizes of the grid the item offsets are computed for */
+    private final GridSpanSizes mSpanSizes = new GridSpanSizes();
+
+    /* the scroll axis of the list, headers stick to the top of vertical and the left of horizontal lists */
+    private boolean mVertical = true;
+    /* true if the last adapter position is laid out first, sections then start at their last item */
+    private boolean mReversed;
 
     protected int marginTop = HeaderDecoration.NO_MARGIN_TOP;
     protected boolean renderInline = false;
@@ -60,22 +197,72 @@ public HeaderDecoration(
             @NonNull final HeaderAdapter adapter,
             final boolean renderInline
     ) {
-
-        // instantiate default adapter
+        this(new HeaderAdapterLevels(adapter), renderInline);
         this.headerAdapter = adapter;
-        this.mHeaderCache = new HashMap<>();
+    }
+
+    public HeaderDecoration(@NonNull final MultiHeaderAdapter adapter) {
+        this(adapter, false);
+    }
 
-        // instantiate double header adapter
-        if (adapter instanceof DoubleHeaderAdapter) {
-            this.subHeaderAdapter = (DoubleHeaderAdapter) adapter;
-            this.subHeaderCache = new HashMap<>();
+    /**
+     * @param adapter      the adapter providing the headers of every level
+     * @param renderInline true if the level 0 headers are drawn over the items instead of taking
+     *                     layout space
+     */
+    public HeaderDecoration(
+            @NonNull final MultiHeaderAdapter adapter,
+            final boolean renderInline
+    ) {
+        final int levelCount = adapter.getHeaderLevelCount();
+        if (levelCount <= 0) throw new IllegalArgumentException("adapter must have at least one header level");
+
+        // instantiate one cache, index and pool per level
+        this.mAdapter = adapter;
+        this.mLevels = new HeaderLevel[levelCount];
+        final SectionIndex[] indexes = new SectionIndex[levelCount];
+        for (int level = 0; level < levelCount; level++) {
+            this.mLevels[level] = new HeaderLevel(level, createIdSource(adapter, level));
+            indexes[level] = this.mLevels[level].index;
         }
+        this.mIndexBuilder = new SectionIndexBuilder(indexes, INDEX_BUILD_BUDGET_NANOS);
+        this.mSnapshot = new LayoutSnapshot(levelCount);
+        this.mHeaderCache = new HeaderCacheMap(this, this.mLevels[0]);
 
         // define if headers will be rendered inline
         this.renderInline = renderInline;
 
     }
 
+    @NonNull
+    private SectionIndex.IdSource createIdSource(@NonNull final MultiHeaderAdapter adapter, final int level) {
+        final boolean batch = adapter instanceof HeaderAdapterLevels
+                ? ((HeaderAdapterLevels) adapter).isBatch(level)
+                : adapter instanceof BatchMultiHeaderAdapter;
+        if (batch) {
+            final BatchMultiHeaderAdapter batchAdapter = (BatchMultiHeaderAdapter) adapter;
+            return new IdWindow(new IdWindow.BatchSource() {
+                @Override
+                public void getIds(final int start, final int count, final long[] out) {
+                    onIdLookup();
+                    batchAdapter.getHeaderIds(level, start, count, out);
+                }
+            });
+        }
+        return new SectionIndex.IdSource() {
+            @Override
+            public long getId(final int position) {
+                onIdLookup();
+                return adapter.getHeaderId(level, position);
+            }
+        };
+    }
+
+    private void onIdLookup() {
+        if (this.mStats != null) this.mStats.onIdLookup();
+        this.mPassIdLookups++;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -86,13 +273,40 @@ public void getItemOffsets(
             final RecyclerView parent,
             final RecyclerView.State state
     ) {
+        final HeaderStats stats = this.mStats;
+        final long start = stats != null ? System.nanoTime() : 0;
+        final DecorationTracer tracer = this.mTracer;
+        if (tracer != null) tracer.beginSection("HeaderDecoration.getItemOffsets");
+        final int previousPass = beginPass(PASS_LAYOUT);
+
+        observeAdapter(parent);
+        updateOrientation(parent);
         int position = parent.getChildAdapterPosition(view);
         int headerHeight = 0;
         if (isInLayout(position)) {
-            if (hasHeader(position)) headerHeight += getHeaderHeightForLayout(parent, position);
-            if (hasSubHeader(position)) headerHeight += getHeight(getSubHeader(parent, position));
+            final RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+            final GridLayoutManager grid = layoutManager instanceof GridLayoutManager && !this.mReversed
+                    ? (GridLayoutManager) layoutManager : null;
+            if (grid != null) this.mSpanSizes.lookup = grid.getSpanSizeLookup();
+            for (final HeaderLevel level : this.mLevels) {
+                // in a grid every cell in the first row of a section makes room for the section's headers
+                final int headerPos = grid != null
+                        ? level.index.getFirstRowSectionStart(position, grid.getSpanCount(), this.mSpanSizes)
+                        : position;
+                if (headerPos != RecyclerView.NO_POSITION && hasHeader(level, headerPos)) {
+                    headerHeight += getHeaderHeightForLayout(parent, level, headerPos);
+                }
+            }
+        }
+        if (this.mVertical) {
+            outRect.set(0, headerHeight, 0, 0);
+        } else {
+            outRect.set(headerHeight, 0, 0, 0);
         }
-        outRect.set(0, headerHeight, 0, 0);
+
+        endPass(previousPass);
+        if (tracer != null) tracer.endSection();
+        if (stats != null) stats.record(HeaderStats.ITEM_OFFSETS, System.nanoTime() - start);
     }
 
     /**
@@ -104,72 +318,128 @@ public void onDrawOver(
             @NonNull final RecyclerView parent,
             @NonNull final RecyclerView.State state
     ) {
-
-        boolean headerDrawn = false;
-        final int count = parent.getChildCount();
-        for (int layoutPos = 0; layoutPos < count; layoutPos++) {
-            final View child = parent.getChildAt(layoutPos);
-            boolean visible = getAnimatedTop(child) > -child.getHeight()/* && child.getTop() < parent.getHeight()*/;
-            final int adapterPos = parent.getChildAdapterPosition(child);
-            if (visible && isInLayout(adapterPos) && (!headerDrawn || hasSubHeader(adapterPos))) {
-
-                // get viewHolder
-                final RecyclerView.ViewHolder holder = getHeader(parent, adapterPos);
-                final RecyclerView.ViewHolder subHolder = getSubHeader(parent, adapterPos);
-
-                // draw subHeaders
-                final View subHeader = getView(subHolder);
-                final View header = getView(holder);
-
-                if (subHeader != null) {
-                    canvas.save();
-                    final int left = child.getLeft();
-                    final int top = getSubHeaderTop(parent, child, header, subHeader, adapterPos, layoutPos);
-                    canvas.translate(left, top);
-                    subHeader.setTranslationX(left);
-                    subHeader.setTranslationY(top);
-                    subHeader.draw(canvas);
-                    canvas.restore();
-                    headerDrawn = true;
-                }
+        final HeaderStats stats = this.mStats;
+        final long start = stats != null ? System.nanoTime() : 0;
+        final DecorationTracer tracer = this.mTracer;
+        if (tracer != null) tracer.beginSection("HeaderDecoration.onDrawOver");
+        final int previousPass = beginPass(PASS_DRAW);
+
+        final LayoutSnapshot snapshot = prepareFrame(parent);
+
+        final boolean rasterize = isRasterizing(parent.getScrollState());
+        if (rasterize) {
+            for (final HeaderLevel level : this.mLevels) {
+                if (level.rasterizer != null) level.rasterizer.beginFrame();
             }
+        } else {
+            releaseRasters();
         }
 
-        headerDrawn = false;
-        for (int layoutPos = 0; layoutPos < count; layoutPos++) {
-            final View child = parent.getChildAt(layoutPos);
-            final int adapterPos = parent.getChildAdapterPosition(child);
-            if (isInLayout(adapterPos) && (!headerDrawn || hasHeader(adapterPos))) {
-
-                // get viewHolder
-                final RecyclerView.ViewHolder holder = getHeader(parent, adapterPos);
-                final RecyclerView.ViewHolder subHolder = getSubHeader(parent, adapterPos);
-
-                // draw subHeaders
-                final View subHeader = getView(subHolder);
-                final View header = getView(holder);
-
-                if (header != null) {
-                    canvas.save();
-                    final int left = child.getLeft();
-                    final int top = getHeaderTop(parent, child, header, subHeader, adapterPos, layoutPos);
-                    canvas.translate(left, top);
-                    header.setTranslationX(left);
-                    header.setTranslationY(top);
-                    header.draw(canvas);
-                    canvas.restore();
-                    headerDrawn = true;
-                }
+        // draw the innermost level first, so that outer headers are drawn on top
+        final boolean vertical = this.mVertical;
+        final HeaderHitRegions regions = this.mHitRegions;
+        regions.reset();
+        for (int l = this.mLevels.length - 1; l >= 0; l--) {
+            final HeaderLevel level = this.mLevels[l];
+            final int[] children = snapshot.headerChildren[l];
+            final int[] starts = snapshot.headerStarts[l];
+            for (int i = 0; i < snapshot.headerCounts[l]; i++) {
+                final int child = children[i];
+                final View header = level.views[child];
+                final long id = snapshot.headerIds[l][child];
+                final int left = vertical ? snapshot.crossStarts[child] : starts[i];
+                final int top = vertical ? starts[i] : snapshot.crossStarts[child];
+                drawHeader(canvas, header, id, level.rasterizer, rasterize, left, top);
+                regions.add(header, l, id, snapshot.positions[child], left, top);
             }
+
+            // do not keep headers alive past this frame
+            Arrays.fill(level.views, 0, snapshot.count, null);
+            if (rasterize && level.rasterizer != null) level.rasterizer.endFrame();
+            if (this.mAutoMaxCachedHeaders) level.cache.setMaxEntries(getAutoMaxCachedHeaders(snapshot.headerCounts[l]));
         }
+
+        endPass(previousPass);
+        if (tracer != null) tracer.endSection();
+        if (stats != null) {
+            stats.record(HeaderStats.DRAW, System.nanoTime() - start);
+            stats.onFrameDrawn();
+        }
+    }
+
+    /**
+     * Starts a frame. RecyclerView calls onDraw of every decoration before it draws the children
+     * and calls onDrawOver, so the frame counter is up to date for every query made while drawing
+     * over the children.
+     */
+    @Override
+    public void onDraw(
+            @NonNull final Canvas canvas,
+            @NonNull final RecyclerView parent,
+            @NonNull final RecyclerView.State state
+    ) {
+        this.mFrame++;
+        // holders used while drawing this frame are on screen and must not be evicted
+        for (final HeaderLevel level : this.mLevels) {
+            level.cache.beginFrame();
+        }
+    }
+
+    /**
+     * Takes the snapshot of the current frame and lays out its headers, unless that already
+     * happened during this frame, e.g. because another decoration asked for the pinned headers.
+     */
+    @NonNull
+    private LayoutSnapshot prepareFrame(@NonNull final RecyclerView parent) {
+        final LayoutSnapshot snapshot = this.mSnapshot;
+        if (this.mSnapshotFrame == this.mFrame) return snapshot;
+
+        observeAdapter(parent);
+        updateOrientation(parent);
+        if (this.mPrefetcher != null) this.mPrefetcher.attach(parent);
+        if (this.mTouchListener != null) this.mTouchListener.attach(parent);
+
+        takeSnapshot(parent);
+        snapshot.compute(getMarginTopPixels(parent), this.renderInline);
+        this.mSnapshotFrame = this.mFrame;
+        return snapshot;
     }
 
     /**
-     * Headers will be recreated and rebound on list scroll after this method has been called.
+     * Headers will be recreated and rebound on list scroll after this method has been called. The
+     * section index is rebuilt as well, in case the header ids changed without the adapter
+     * notifying about it.
      */
     public void clearCache() {
-        this.clearHeaderCache();
-        this.clearSubHeaderCache();
+        for (final HeaderLevel level : this.mLevels) {
+            level.clear();
+        }
+        invalidateIndexes();
+        resetIdWindows(getItemCount());
+    }
+
+    /**
+     * Releases the list the decoration was last used with: stops observing its adapter and
+     * removes the listeners the decoration added to it. RecyclerView does not tell a decoration
+     * when it is removed, so call this after
+     * {@link RecyclerView#removeItemDecoration(RecyclerView.ItemDecoration)}, otherwise the
+     * adapter keeps a reference to the decoration and the list. Adding the decoration to a list
+     * again attaches it again.
+     */
+    public void detach() {
+        stopObservingAdapter();
+        releaseRasters();
+        if (this.mPrefetcher != null) this.mPrefetcher.detach();
+        if (this.mTouchListener != null) this.mTouchListener.detach();
+        final RecyclerView parent = this.mRecyclerView;
+        if (parent != null) {
+            parent.removeOnAttachStateChangeListener(this.mAttachListener);
+            parent.removeOnScrollListener(this.mScrollListener);
+            parent.removeCallbacks(this.mInvalidateItemDecorations);
+            this.mInvalidateItemDecorationsPosted = false;
+            this.mRecyclerView = null;
+        }
+        this.mSnapshotFrame = NO_FRAME;
     }
 
     /**
@@ -177,7 +447,7 @@ public void clearCache() {
      * rebound on list scroll after this method has been called.
      */
     public void clearSubHeaderCache() {
-        if (this.subHeaderCache != null) this.subHeaderCache.clear();
+        if (this.mLevels.length > 1) clearHeaderCache(1);
     }
 
     /**
@@ -185,311 +455,1326 @@ public void clearSubHeaderCache() {
      * rebound on list scroll after this method has been called.
      */
     public void clearHeaderCache() {
-        this.mHeaderCache.clear();
+        clearHeaderCache(0);
     }
 
     /**
-     * check if the adapter is using a top margin for its sticky-headers
+     * Clears the view cache of a header level. Its headers will be recreated and
+     * rebound on list scroll after this method has been called.
      *
-     * @return true if the adapter is using top margin
+     * @param level the header level
      */
-    public boolean hasMarginTop() {
-        return this.marginTop != HeaderDecoration.NO_MARGIN_TOP;
+    public void clearHeaderCache(final int level) {
+        getLevel(level).clear();
     }
 
     /**
-     * clear the top margin
+     * Rebinds the cached header with the given id in place the next time it is used, without
+     * recreating it. The header is only measured again if rebinding requested a new layout.
+     *
+     * @param id the header id
      */
-    public void clearMarginTop() {
-        this.marginTop = HeaderDecoration.NO_MARGIN_TOP;
+    public void invalidateHeader(final long id) {
+        invalidateHeader(0, id);
     }
 
     /**
-     * set the top margin of the headers so that they will stop before reaching the top border of the view.
-     * This is very useful when implementing sticky-headers combined with smooth-app-bar-layout:
-     * https://github.com/henrytao-me/smooth-app-bar-layout
+     * Rebinds the cached sub-header with the given id in place the next time it is used, without
+     * recreating it. The sub-header is only measured again if rebinding requested a new layout.
      *
-     * @param marginTop the margin top dimension
+     * @param id the sub-header id
      */
-    public void setMarginTop(@DimenRes int marginTop) {
-        this.marginTop = marginTop;
+    public void invalidateSubHeader(final long id) {
+        if (this.mLevels.length > 1) invalidateHeader(1, id);
     }
 
-    protected boolean isInLayout(final int adapterPosition) {
-        return adapterPosition != RecyclerView.NO_POSITION;
+    /**
+     * Rebinds the cached header of a level with the given id in place, see {@link #invalidateHeader(long)}.
+     *
+     * @param level the header level
+     * @param id    the header id
+     */
+    public void invalidateHeader(final int level, final long id) {
+        if (getLevel(level).cache.markDirty(id)) invalidateParent();
     }
 
-    protected boolean hasMarginTop(@DimenRes final int marginTop) {
-        return marginTop != HeaderDecoration.NO_MARGIN_TOP;
+    /**
+     * Rebinds the cached headers of every section intersecting the given item range in place.
+     *
+     * @param positionStart the position of the first item
+     * @param itemCount     the number of items
+     * @see #invalidateHeader(long)
+     */
+    public void invalidateHeaders(final int positionStart, final int itemCount) {
+        invalidateHeaders(0, positionStart, itemCount);
     }
 
-    protected int getMarginTopPixels(@NonNull final ViewGroup viewGroup) {
-        final Resources resources = viewGroup.getContext().getResources();
-        return hasMarginTop(this.marginTop) ? resources.getDimensionPixelSize(this.marginTop) : 0;
+    /**
+     * Rebinds the cached sub-headers of every section intersecting the given item range in place.
+     *
+     * @param positionStart the position of the first item
+     * @param itemCount     the number of items
+     * @see #invalidateSubHeader(long)
+     */
+    public void invalidateSubHeaders(final int positionStart, final int itemCount) {
+        if (this.mLevels.length > 1) invalidateHeaders(1, positionStart, itemCount);
     }
 
-    protected int getAnimatedTop(@NonNull final View view) {
-        return view.getTop() + (int) view.getTranslationY();
+    /**
+     * Rebinds the cached headers of a level for every section intersecting the given item range in
+     * place.
+     *
+     * @param level         the header level
+     * @param positionStart the position of the first item
+     * @param itemCount     the number of items
+     * @see #invalidateHeader(int, long)
+     */
+    public void invalidateHeaders(final int level, final int positionStart, final int itemCount) {
+        if (markDirty(getLevel(level), positionStart, itemCount)) invalidateParent();
     }
 
-    protected boolean isFirstValidChild(final int layoutPos, @NonNull final RecyclerView parent) {
-        boolean isFirstValidChild = true;
-        for (int otherLayoutPos = layoutPos - 1; otherLayoutPos >= 0; --otherLayoutPos) {
-            final View otherChild = parent.getChildAt(otherLayoutPos);
-            if (isInLayout(parent.getChildAdapterPosition(otherChild))) {
-                boolean visible = getAnimatedTop(otherChild) > -getHeaderHeightForLayout(otherChild);
-                if (visible) {
-                    isFirstValidChild = false;
-                    break;
-                }
+    /**
+     * Sets how headers are drawn. {@link #RENDER_LIVE} draws the header views on every frame.
+     * {@link #RENDER_RASTER} renders every header on screen once into a bitmap while the list is
+     * scrolling and draws that bitmap on the following frames, {@link #RENDER_RASTER_WHILE_SETTLING}
+     * does so only while the list is flinging. A raster is rendered again when its header is
+     * recreated or rebound, when the header view has been invalidated or when its size changed.
+     * Only the headers drawn during the last few frames keep their raster, and all rasters are
+     * released once the list stops.
+     *
+     * @param renderMode one of {@link #RENDER_LIVE}, {@link #RENDER_RASTER} or
+     *                   {@link #RENDER_RASTER_WHILE_SETTLING}
+     */
+    public void setRenderMode(final int renderMode) {
+        if (renderMode != RENDER_LIVE && renderMode != RENDER_RASTER && renderMode != RENDER_RASTER_WHILE_SETTLING) {
+            throw new IllegalArgumentException("Unknown render mode " + renderMode);
+        }
+        this.mRenderMode = renderMode;
+        for (final HeaderLevel level : this.mLevels) {
+            if (renderMode == RENDER_LIVE) {
+                if (level.rasterizer != null) level.rasterizer.clear();
+                level.rasterizer = null;
+            } else if (level.rasterizer == null) {
+                level.rasterizer = new HeaderRasterizer();
             }
         }
-        return isFirstValidChild;
-    }
-
-    protected int getHeaderHeightForLayout(@NonNull final RecyclerView recyclerView, final int adapterPos) {
-        final RecyclerView.ViewHolder viewHolder = getHeader(recyclerView, adapterPos);
-        return getHeaderHeightForLayout(viewHolder);
-    }
-
-    protected int getHeaderHeightForLayout(@Nullable final RecyclerView.ViewHolder viewHolder) {
-        if (viewHolder == null) return 0;
-        return getHeaderHeightForLayout(viewHolder.itemView);
     }
 
-    protected int getHeaderHeightForLayout(@NonNull final View header) {
-        return this.renderInline ? 0 : header.getHeight();
+    /**
+     * @return the current render mode
+     */
+    public int getRenderMode() {
+        return this.mRenderMode;
     }
 
-    private long getHeaderId(final int adapterPos) {
-        return this.headerAdapter.getHeaderId(adapterPos);
+    /**
+     * Creates and binds the headers of all levels of the next sections in the scroll direction
+     * while the main thread is idle, before they scroll into view.
+     *
+     * @param count the number of sections to prefetch ahead of the visible ones, 0 disables prefetching
+     */
+    public void setHeaderPrefetchCount(final int count) {
+        if (count < 0) throw new IllegalArgumentException("count must not be negative");
+        this.mPrefetchCount = count;
+        if (count == 0) {
+            if (this.mPrefetcher != null) this.mPrefetcher.detach();
+            this.mPrefetcher = null;
+        } else if (this.mPrefetcher == null) {
+            this.mPrefetcher = new HeaderPrefetcher(this, count, this.mPrefetchBudgetNanos);
+        } else {
+            this.mPrefetcher.setCount(count);
+        }
     }
 
-    private long getSubHeaderId(final int adapterPos) {
-        if (this.subHeaderAdapter == null) return RecyclerView.NO_ID;
-        return this.subHeaderAdapter.getSubHeaderId(adapterPos);
+    /**
+     * Sets how much time prefetching may spend creating headers each time the main thread is idle.
+     *
+     * @param budgetNanos the time budget in nanoseconds
+     */
+    public void setHeaderPrefetchBudget(final long budgetNanos) {
+        if (budgetNanos <= 0) throw new IllegalArgumentException("budgetNanos must be positive");
+        this.mPrefetchBudgetNanos = budgetNanos;
+        if (this.mPrefetcher != null) this.mPrefetcher.setBudgetNanos(budgetNanos);
     }
 
     /**
-     * check if the given item at a given adapterPosition has a header
+     * Sets a listener for taps on the drawn headers. Touches that start on a header are consumed
+     * and no longer reach the item drawn underneath, but a drag starting on a header still
+     * scrolls the list.
      *
-     * @param adapterPos the adapterPosition to check
-     * @return true if the item has a header
+     * @param listener the listener, null to remove it
      */
-    protected boolean hasHeader(final int adapterPos) {
-        final boolean hasId = this.headerAdapter.getHeaderId(adapterPos) != RecyclerView.NO_ID;
-        if (adapterPos == 0 && hasId) {
-            return true;
-        }
-        final int previous = adapterPos - 1;
-        return hasId && this.headerAdapter.getHeaderId(adapterPos) != this.headerAdapter.getHeaderId(previous);
+    public void setOnHeaderClickListener(@Nullable final OnHeaderClickListener listener) {
+        this.mOnHeaderClickListener = listener;
+        updateTouchListener();
     }
 
-
     /**
-     * check if the given item at a given adapterPosition has a subHeader
+     * Sets a listener for long presses on the drawn headers, see
+     * {@link #setOnHeaderClickListener(OnHeaderClickListener)}.
      *
-     * @param adapterPos the adapterPosition to check
-     * @return true if the item has a subHeader
+     * @param listener the listener, null to remove it
      */
-    private boolean hasSubHeader(final int adapterPos) {
-        if (this.subHeaderAdapter == null) return false;
-        final boolean hasId = this.subHeaderAdapter.getSubHeaderId(adapterPos) != RecyclerView.NO_ID;
-        if (adapterPos == 0 && hasId) {
-            return true;
-        }
-        final int previous = adapterPos - 1;
-        return hasId && this.subHeaderAdapter.getSubHeaderId(adapterPos) != this.subHeaderAdapter.getSubHeaderId(previous);
+    public void setOnHeaderLongClickListener(@Nullable final OnHeaderLongClickListener listener) {
+        this.mOnHeaderLongClickListener = listener;
+        updateTouchListener();
     }
 
-    protected int getHeaderTop(
-            @NonNull final RecyclerView parent,
-            @NonNull final View child,
-            @NonNull final View header,
-            @Nullable final View subHeader,
-            final int adapterPos,
-            final int layoutPos
-    ) {
-        int top = getAnimatedTop(child) - getHeight(header) - getHeight(subHeader);
-        final int marginTop = getMarginTopPixels(parent);
-        if (isFirstValidChild(layoutPos, parent)) {
-            final int count = parent.getChildCount();
-            final long currentId = this.headerAdapter.getHeaderId(adapterPos);
-            // find next view with header and compute the offscreen push if needed
-            for (int i = layoutPos + 1; i < count; i++) {
-                final View next = parent.getChildAt(i);
-                int nextAdapterPosition = parent.getChildAdapterPosition(next);
-                if (isInLayout(nextAdapterPosition)) {
-                    long nextId = this.headerAdapter.getHeaderId(nextAdapterPosition);
-                    if (nextId != currentId) {
-                        final int headersHeight = getHeaderHeightForLayout(header) + getHeaderHeightForLayout(parent, nextAdapterPosition);
-                        int offset = getAnimatedTop(next) - headersHeight - getSubHeaderHeight(parent, nextAdapterPosition);
-                        if (offset < marginTop) {
-                            return offset;
-                        } else {
-                            break;
-                        }
-                    }
-                }
-            }
+    private void updateTouchListener() {
+        if (this.mOnHeaderClickListener == null && this.mOnHeaderLongClickListener == null) {
+            if (this.mTouchListener != null) this.mTouchListener.detach();
+            this.mTouchListener = null;
+        } else if (this.mTouchListener == null) {
+            this.mTouchListener = new HeaderTouchListener(this);
+            // the list is known once the decoration has been used, otherwise attach on the next frame
+            if (this.mRecyclerView != null) this.mTouchListener.attach(this.mRecyclerView);
         }
-
-        return Math.max(marginTop, top);
     }
 
-    private int getSubHeaderTop(
-            @NonNull final RecyclerView parent,
-            @NonNull final View child,
-            @Nullable final View header,
-            @Nullable final View subHeader,
-            final int adapterPos,
-            final int layoutPos
-    ) {
-
-        final int top = getAnimatedTop(child) - getHeight(subHeader);
-        final int marginTop = getMarginTopPixels(parent);
-
-        if (isFirstValidChild(layoutPos, parent)) {
-
-            final int count = parent.getChildCount();
-            final long currentHeaderId = this.getHeaderId(adapterPos);
-            final long currentSubHeaderId = this.getSubHeaderId(adapterPos);
-
-            // find next view with sub-header and compute the offscreen push if needed
-            for (int i = layoutPos + 1; i < count; i++) {
-                final View next = parent.getChildAt(i);
-                int nextAdapterPosition = parent.getChildAdapterPosition(next);
-                if (isInLayout(nextAdapterPosition)) {
-                    final long nextHeaderId = this.getHeaderId(nextAdapterPosition);
-                    final long nextSubHeaderId = this.getSubHeaderId(nextAdapterPosition);
-
-                    if (nextSubHeaderId != currentSubHeaderId) {
-
-                        int headersHeight = getHeight(subHeader) + getHeight(getSubHeader(parent, nextAdapterPosition));
-                        if (nextHeaderId != currentHeaderId) {
-                            headersHeight += getHeight(getHeader(parent, nextAdapterPosition)); // add subHolder height?
-                        }
-
-                        final int offset = getAnimatedTop(next) - headersHeight;// getAnimatedTop(next) - subHeadersHeight;
-                        if (offset < marginTop + getHeight(header)) {
-                            return offset;
-                        } else {
-                            break;
-                        }
-                    }
-                }
-            }
+    /**
+     * Limits the number of headers kept in the cache. Least recently used headers are evicted once
+     * the limit is exceeded, but headers currently on screen are never evicted. The limit applies
+     * separately to the cache of every header level.
+     * <p>
+     * Evicted headers are recycled and rebound to new header ids of the same view type, see
+     * {@link TypedHeaderAdapter}. By default the limit follows the number of headers drawn in the
+     * last frame plus the prefetched ones and a few spare headers, so the header memory is bounded
+     * by what is on screen instead of by the number of sections. Setting a limit replaces that.
+     *
+     * @param maxHeaders the maximum number of cached headers
+     */
+    public void setMaxCachedHeaders(final int maxHeaders) {
+        if (maxHeaders < 1) throw new IllegalArgumentException("maxHeaders must be positive");
+        this.mAutoMaxCachedHeaders = false;
+        for (final HeaderLevel level : this.mLevels) {
+            level.cache.setMaxEntries(maxHeaders);
         }
-        return Math.max(marginTop + getHeight(header), top);
-
     }
 
     /**
-     * @param parent     the recyclerView
-     * @param adapterPos the adapterPosition
-     * @return the header for a given adapter position if a header exists for that position
+     * @return the default cache limit of a level, room for the headers drawn, the headers
+     * prefetched while flinging, which looks twice as far ahead, and a few spare headers
      */
-    @Nullable
-    protected RecyclerView.ViewHolder getHeader(@NonNull final RecyclerView parent, final int adapterPos) {
-        final long id = headerAdapter.getHeaderId(adapterPos);
-        if (id == RecyclerView.NO_ID) return null;
-
-        if (mHeaderCache.containsKey(id)) {
-            return mHeaderCache.get(id);
-        } else {
-            final RecyclerView.ViewHolder holder = this.headerAdapter.onCreateHeaderViewHolder(parent);
-            final View header = holder.itemView;
-
-            //noinspection unchecked
-            this.headerAdapter.onBindHeaderViewHolder(holder, adapterPos);
-            measureView(parent, header);
-            mHeaderCache.put(id, holder);
+    private int getAutoMaxCachedHeaders(final int drawnHeaders) {
+        return drawnHeaders + 2 * this.mPrefetchCount + CACHED_HEADERS_SLACK;
+    }
 
-            return holder;
+    /**
+     * Sets how many evicted headers of a view type are kept for recycling, 5 by default.
+     * The limit applies separately to every header level.
+     *
+     * @param viewType the header view type, 0 for adapters that are not typed
+     * @param max      the maximum number of recycled headers of that type
+     */
+    public void setMaxRecycledHeaders(final int viewType, final int max) {
+        if (max < 0) throw new IllegalArgumentException("max must not be negative");
+        for (final HeaderLevel level : this.mLevels) {
+            level.pool.setMaxRecycled(viewType, max);
         }
     }
 
     /**
-     * @param parent     the recyclerView
-     * @param adapterPos the adapterPosition
-     * @return the subHeader for a given adapter position if a subHeader exists for that position
+     * Sets the height of every header of a view type, so that item offsets can be computed without
+     * creating headers during layout. A header whose measured height differs from its hint is
+     * still drawn correctly, the item offsets are refreshed once it has been measured. In
+     * horizontal lists the hint is the header width.
+     *
+     * @param viewType the header view type, 0 for adapters that are not typed
+     * @param height   the header height in pixels
      */
-    @Nullable
-    private RecyclerView.ViewHolder getSubHeader(@NonNull final RecyclerView parent, final int adapterPos) {
-        if (this.subHeaderAdapter == null || this.subHeaderCache == null) return null;
-        final long id = this.getSubHeaderId(adapterPos);
-        if (id == RecyclerView.NO_ID) return null;
-
-        if (this.subHeaderCache.containsKey(id)) {
-            return this.subHeaderCache.get(id);
-        } else {
-            final RecyclerView.ViewHolder holder = this.subHeaderAdapter.onCreateSubHeaderHolder(parent);
-            final View header = holder.itemView;
-
-            //noinspection unchecked
-            this.subHeaderAdapter.onBindSubHeaderHolder(holder, adapterPos);
-            this.measureView(parent, header);
-            this.subHeaderCache.put(id, holder);
-
-            return holder;
-        }
+    public void setHeaderHeightHint(final int viewType, final int height) {
+        setHeaderHeightHint(0, viewType, height);
     }
 
     /**
-     * calculate the height for a given adapterPosition
-     * if the adapterPosition does not contain a header, return 0
+     * Sets the height of every sub-header of a view type, see {@link #setHeaderHeightHint(int, int)}.
      *
-     * @param adapterPos the adapterPos to get the header for
-     * @return 0 if the item does not have a header, otherwise the height of the item's header
+     * @param viewType the sub-header view type, 0 for adapters that are not typed
+     * @param height   the sub-header height in pixels
      */
-    protected int getHeaderHeight(@NonNull final RecyclerView recyclerView, final int adapterPos) {
-        return getHeaderHeightForLayout(getHeader(recyclerView, adapterPos));
+    public void setSubHeaderHeightHint(final int viewType, final int height) {
+        if (this.mLevels.length > 1) setHeaderHeightHint(1, viewType, height);
     }
 
     /**
-     * calculate the height for a given adapterPosition
-     * if the adapterPosition does not contain a subHeader, return 0
+     * Sets the height of every header of a level and view type, see {@link #setHeaderHeightHint(int, int)}.
      *
-     * @param adapterPos the adapterPos to get the subHeader for
-     * @return 0 if the item does not have a header, otherwise the height of the item's header
+     * @param level    the header level
+     * @param viewType the header view type
+     * @param height   the header height in pixels
      */
-    protected int getSubHeaderHeight(@NonNull final RecyclerView recyclerView, final int adapterPos) {
-        return getHeight(getSubHeader(recyclerView, adapterPos));
+    public void setHeaderHeightHint(final int level, final int viewType, final int height) {
+        if (height < 0) throw new IllegalArgumentException("height must not be negative");
+        getLevel(level).hints.setFixed(viewType, height);
     }
 
     /**
-     * calculate the height for a given viewHolder if it's not null, otherwise return 0
+     * Sets the height reserved where a run of placeholders starts, see {@link #UNKNOWN_ID}. By
+     * default the last measured header height is reserved.
      *
-     * @param viewHolder the viewHolder, may be null
-     * @return 0 if the viewHolder is null, otherwise the height of its itemView
+     * @param height the placeholder header height in pixels
      */
-    protected int getHeight(@Nullable final RecyclerView.ViewHolder viewHolder) {
-        if (viewHolder == null) return 0;
-        return getHeight(viewHolder.itemView);
+    public void setPlaceholderHeaderHeight(final int height) {
+        setPlaceholderHeaderHeight(0, height);
     }
 
     /**
-     * calculate the height for a given view if it's not null, otherwise return 0
+     * Sets the height reserved for placeholders of a header level, see
+     * {@link #setPlaceholderHeaderHeight(int)}.
      *
-     * @param view the view, may be null
-     * @return 0 if the view is null, otherwise the height of the view
+     * @param level  the header level
+     * @param height the placeholder header height in pixels
      */
-    protected int getHeight(@Nullable final View view) {
-        if (view == null) return 0;
-        return view.getHeight();
+    public void setPlaceholderHeaderHeight(final int level, final int height) {
+        if (height < 0) throw new IllegalArgumentException("height must not be negative");
+        getLevel(level).hints.setPlaceholder(height);
     }
 
-    @Nullable
-    protected View getView(@Nullable final RecyclerView.ViewHolder viewHolder) {
-        if (viewHolder == null) return null;
-        return viewHolder.itemView;
+    /**
+     * Lets headers without a fixed height hint be estimated by the measured height of the last
+     * header of the same view type. Only the first header of each view type is created during
+     * layout, the item offsets are refreshed whenever an estimate turns out to be wrong.
+     *
+     * @param estimate true to estimate header heights, disabled by default
+     */
+    public void setEstimateHeaderHeights(final boolean estimate) {
+        for (final HeaderLevel level : this.mLevels) {
+            level.hints.setEstimate(estimate);
+        }
     }
 
+    /**
+     * Limits the estimated memory used by the cached headers, see {@link #estimateSize(View)}.
+     * Least recently used headers are evicted once the budget is exceeded, but headers currently on
+     * screen are never evicted. The budget applies separately to the cache of every header level.
+     *
+     * @param maxBytes the memory budget in bytes
+     */
+    public void setMaxCachedHeaderBytes(final long maxBytes) {
+        for (final HeaderLevel level : this.mLevels) {
+            level.cache.setMaxBytes(maxBytes);
+        }
+    }
 
-    protected void measureView(@NonNull final RecyclerView parent, @NonNull final View header) {
+    /**
+     * @return the number of header lookups of all levels that were served from the cache
+     */
+    public long getCacheHitCount() {
+        long hits = 0;
+        for (final HeaderLevel level : this.mLevels) {
+            hits += level.cache.hitCount();
+        }
+        return hits;
+    }
+
+    /**
+     * @return the number of header lookups of all levels that required a new header to be created
+     */
+    public long getCacheMissCount() {
+        long misses = 0;
+        for (final HeaderLevel level : this.mLevels) {
+            misses += level.cache.missCount();
+        }
+        return misses;
+    }
+
+    /**
+     * @return the number of headers of all levels that were evicted from the cache
+     */
+    public long getCacheEvictionCount() {
+        long evictions = 0;
+        for (final HeaderLevel level : this.mLevels) {
+            evictions += level.cache.evictionCount();
+        }
+        return evictions;
+    }
+
+    /**
+     * Starts or stops collecting {@link HeaderStats}. Collecting is disabled by default and costs
+     * close to nothing while disabled, enabling it starts from zero.
+     *
+     * @param enabled true to collect stats
+     */
+    public void setStatsEnabled(final boolean enabled) {
+        if (!enabled) {
+            this.mStats = null;
+        } else if (this.mStats == null) {
+            this.mStats = new HeaderStats();
+        }
+    }
+
+    /**
+     * Returns a copy of the stats collected so far, including the current size of the header
+     * caches.
+     *
+     * @return the stats, or null if collecting stats is disabled
+     */
+    @Nullable
+    public HeaderStats getStats() {
+        final HeaderStats stats = this.mStats;
+        if (stats == null) return null;
+
+        int headers = 0;
+        long bytes = 0;
+        for (final HeaderLevel level : this.mLevels) {
+            headers += level.cache.size();
+            bytes += level.cache.bytes();
+        }
+        stats.setCacheSize(headers, bytes);
+        return new HeaderStats(stats);
+    }
+
+    /**
+     * Sets the collected stats back to zero, e.g. after they were reported.
+     */
+    public void resetStats() {
+        if (this.mStats != null) this.mStats.reset();
+    }
+
+    /**
+     * Sets a tracer receiving sections for drawing, item offsets, and the creation, binding and
+     * measuring of every header, tagged with the header id. Use {@link SystraceTracer} to see them
+     * in system traces. Without a tracer, tracing costs a null check per section.
+     *
+     * @param tracer the tracer, null to stop tracing
+     */
+    public void setTracer(@Nullable final DecorationTracer tracer) {
+        this.mTracer = tracer;
+    }
+
+    /**
+     * Sets a policy reporting headers that are created, bound or measured inside a draw or layout
+     * pass, and passes requesting too many header ids. Meant for debug builds, see
+     * {@link HeaderPolicy}.
+     *
+     * @param policy the policy, null to stop detecting violations
+     */
+    public void setPolicy(@Nullable final HeaderPolicy policy) {
+        this.mPolicy = policy;
+    }
+
+    /**
+     * Returns the number of sections, runs of consecutive items sharing a header id. Together with
+     * {@link #getSectionStart(int)}, {@link #getSectionForPosition(int)} and
+     * {@link #getSectionId(int)} this lets fast scrollers and section menus find sections without
+     * asking the adapter for every id.
+     * <p>
+     * The section index is built with a single pass over the adapter while the main thread is idle
+     * after the decoration is first used, and patched from the adapter's change notifications
+     * afterwards. If the build has not finished yet, these methods complete it first. The position
+     * queries are binary searches. The decoration has to be added to a RecyclerView with an
+     * adapter, otherwise there are no sections.
+     *
+     * @return the number of sections, including runs of items without a header
+     */
+    public int getSectionCount() {
+        return getSectionCount(0);
+    }
+
+    /**
+     * @param section the section index
+     * @return the adapter position of the first item of the section
+     */
+    public int getSectionStart(final int section) {
+        return getSectionStart(0, section);
+    }
+
+    /**
+     * @param position the adapter position
+     * @return the index of the section containing the position, or {@link RecyclerView#NO_POSITION}
+     * if there is no such item
+     */
+    public int getSectionForPosition(final int position) {
+        return getSectionForPosition(0, position);
+    }
+
+    /**
+     * @param section the section index
+     * @return the header id of the section, {@link RecyclerView#NO_ID} for items without a header
+     * and {@link #UNKNOWN_ID} for placeholders
+     */
+    public long getSectionId(final int section) {
+        return getSectionId(0, section);
+    }
+
+    /**
+     * @param level the header level
+     * @return the number of sections of the header level, see {@link #getSectionCount()}
+     */
+    public int getSectionCount(final int level) {
+        final SectionIndex index = getBuiltIndex(level);
+        return index != null ? index.getSectionCount() : 0;
+    }
+
+    /**
+     * @param level   the header level
+     * @param section the section index
+     * @return the adapter position of the first item of the section
+     */
+    public int getSectionStart(final int level, final int section) {
+        return getSectionIndex(level, section).getSectionStart(section);
+    }
+
+    /**
+     * @param level    the header level
+     * @param position the adapter position
+     * @return the index of the section containing the position, or {@link RecyclerView#NO_POSITION}
+     * if there is no such item
+     */
+    public int getSectionForPosition(final int level, final int position) {
+        final SectionIndex index = getBuiltIndex(level);
+        if (index == null || position < 0 || position >= index.getItemCount()) return RecyclerView.NO_POSITION;
+        return index.getSectionForPosition(position);
+    }
+
+    /**
+     * @param level   the header level
+     * @param section the section index
+     * @return the header id of the section, {@link RecyclerView#NO_ID} for items without a header
+     * and {@link #UNKNOWN_ID} for placeholders
+     */
+    public long getSectionId(final int level, final int section) {
+        return getSectionIndex(level, section).getSectionId(section);
+    }
+
+    /**
+     * Scrolls the list so that the first item of the section with the given header id lands right
+     * below the pinned headers, taking the top margin and the padding of the list into account,
+     * also when the list does not clip to its padding. Reversed lists and layout
+     * managers that are not a {@link LinearLayoutManager} only scroll the item into view.
+     *
+     * @param id the header id
+     * @return true if a section with the id exists
+     */
+    public boolean scrollToHeader(final long id) {
+        return scrollToHeader(0, id);
+    }
+
+    /**
+     * Scrolls the list to the first section of a header level with the given id, see
+     * {@link #scrollToHeader(long)}.
+     *
+     * @param level the header level
+     * @param id    the header id
+     * @return true if a section with the id exists
+     */
+    public boolean scrollToHeader(final int level, final long id) {
+        final RecyclerView parent = this.mRecyclerView;
+        final SectionIndex index = getBuiltIndex(level);
+        if (parent == null || index == null || id == UNKNOWN_ID) return false;
+        final int section = index.findSection(id);
+        if (section == SectionIndex.NO_POSITION) return false;
+        final int position = index.getSectionStart(section);
+
+        final RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager) || this.mReversed) {
+            parent.scrollToPosition(position);
+            return true;
+        }
+
+        // the item offset makes room for the headers the item starts, the outer headers stay pinned above.
+        // Pinned headers are measured from the edge of the list, the scroll offset from its padding
+        int offset = getMarginTopPixels(parent) - (this.mVertical ? parent.getPaddingTop() : parent.getPaddingLeft());
+        for (int l = 0; l < level; l++) {
+            final HeaderLevel outer = this.mLevels[l];
+            if (!hasHeader(outer, position)) offset += getHeaderHeightForLayout(parent, outer, position);
+        }
+        ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(position, offset);
+        return true;
+    }
+
+    /**
+     * @return the section index of a level, its build completed if needed, or null if no adapter
+     * is known yet
+     */
+    @Nullable
+    private SectionIndex getBuiltIndex(final int level) {
+        final SectionIndex index = getLevel(level).index;
+        if (!index.isValid() && this.mObservedAdapter != null) this.mIndexBuilder.finish(getItemCount());
+        return index.isValid() ? index : null;
+    }
+
+    @NonNull
+    private SectionIndex getSectionIndex(final int level, final int section) {
+        final SectionIndex index = getBuiltIndex(level);
+        if (index == null || section < 0 || section >= index.getSectionCount()) {
+            throw new IndexOutOfBoundsException("No section " + section);
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of header levels
+     */
+    public int getHeaderLevelCount() {
+        return this.mLevels.length;
+    }
+
+    /**
+     * check if the adapter is using a top margin for its sticky-headers
+     *
+     * @return true if the adapter is using top margin
+     */
+    public boolean hasMarginTop() {
+        return this.marginTop != HeaderDecoration.NO_MARGIN_TOP;
+    }
+
+    /**
+     * clear the top margin
+     */
+    public void clearMarginTop() {
+        this.marginTop = HeaderDecoration.NO_MARGIN_TOP;
+    }
+
+    /**
+     * set the top margin of the headers so that they will stop before reaching the top border of the view.
+     * This is very useful when implementing sticky-headers combined with smooth-app-bar-layout:
+     * https://github.com/henrytao-me/smooth-app-bar-layout
+     *
+     * @param marginTop the margin top dimension
+     */
+    public void setMarginTop(@DimenRes int marginTop) {
+        this.marginTop = marginTop;
+    }
+
+    protected boolean isInLayout(final int adapterPosition) {
+        return adapterPosition != RecyclerView.NO_POSITION;
+    }
+
+    protected boolean hasMarginTop(@DimenRes final int marginTop) {
+        return marginTop != HeaderDecoration.NO_MARGIN_TOP;
+    }
+
+    protected int getMarginTopPixels(@NonNull final ViewGroup viewGroup) {
+        final Resources resources = viewGroup.getContext().getResources();
+        return hasMarginTop(this.marginTop) ? resources.getDimensionPixelSize(this.marginTop) : 0;
+    }
+
+    protected int getAnimatedTop(@NonNull final View view) {
+        return view.getTop() + (int) view.getTranslationY();
+    }
+
+    protected int getAnimatedLeft(@NonNull final View view) {
+        return view.getLeft() + (int) view.getTranslationX();
+    }
+
+    /**
+     * @deprecated the sticky child is found once per frame by the header layout, this reads it from
+     * the layout of the current frame. The header layout does not call this method, overriding it
+     * has no effect on where headers are drawn.
+     */
+    @Deprecated
+    protected boolean isFirstValidChild(final int layoutPos, @NonNull final RecyclerView parent) {
+        return layoutPos <= prepareFrame(parent).getStickyChild();
+    }
+
+    protected int getHeaderHeightForLayout(@NonNull final RecyclerView recyclerView, final int adapterPos) {
+        if (this.renderInline) return 0;
+        return getLevelHeightForLayout(recyclerView, this.mLevels[0], adapterPos);
+    }
+
+    protected int getHeaderHeightForLayout(@Nullable final RecyclerView.ViewHolder viewHolder) {
+        if (viewHolder == null) return 0;
+        return getHeaderHeightForLayout(viewHolder.itemView);
+    }
+
+    protected int getHeaderHeightForLayout(@NonNull final View header) {
+        return this.renderInline ? 0 : getExtent(header);
+    }
+
+    /**
+     * Returns the header height of a level used for the item offsets.
+     */
+    private int getHeaderHeightForLayout(
+            @NonNull final RecyclerView recyclerView,
+            @NonNull final HeaderLevel level,
+            final int adapterPos
+    ) {
+        return level.level == 0
+                ? getHeaderHeightForLayout(recyclerView, adapterPos)
+                : getLevelHeightForLayout(recyclerView, level, adapterPos);
+    }
+
+    /**
+     * Returns the header height of a level used for the item offsets, from the cached header or a
+     * height hint if possible so that the header is not created during layout.
+     */
+    private int getLevelHeightForLayout(
+            @NonNull final RecyclerView recyclerView,
+            @NonNull final HeaderLevel level,
+            final int adapterPos
+    ) {
+        final long id = level.index.getId(adapterPos);
+        if (id == RecyclerView.NO_ID) return 0;
+        if (id == UNKNOWN_ID) return level.hints.getPlaceholder();
+
+        // prefer a header that already exists or a height hint over creating the header mid-layout
+        final HeaderCache.Entry<RecyclerView.ViewHolder> entry = level.cache.peek(id);
+        if (entry != null) return getExtent(entry.value.itemView);
+        final int hint = level.hints.get(this.mAdapter.getHeaderViewType(level.level, adapterPos));
+        if (hint != HeaderHeightHints.NO_HINT) return hint;
+
+        return getExtent(getView(getHeader(recyclerView, level, adapterPos)));
+    }
+
+    /**
+     * Captures the position, animated top, header ids and header heights of every child once, so
+     * the headers of all levels can be laid out with a single pass over the children.
+     */
+    private void takeSnapshot(@NonNull final RecyclerView parent) {
+        final int count = parent.getChildCount();
+        final LayoutSnapshot snapshot = this.mSnapshot;
+        snapshot.reset(count);
+        for (final HeaderLevel level : this.mLevels) {
+            if (level.views.length < count) level.views = new View[snapshot.valid.length];
+        }
+
+        // in a grid the headers span the full width instead of starting at the cell
+        final boolean grid = parent.getLayoutManager() instanceof GridLayoutManager;
+        final boolean vertical = this.mVertical;
+
+        for (int layoutPos = 0; layoutPos < count; layoutPos++) {
+            final View child = parent.getChildAt(layoutPos);
+            final int adapterPos = parent.getChildAdapterPosition(child);
+            final boolean valid = isInLayout(adapterPos);
+
+            snapshot.valid[layoutPos] = valid;
+            snapshot.positions[layoutPos] = adapterPos;
+            if (vertical) {
+                snapshot.crossStarts[layoutPos] = grid ? parent.getPaddingLeft() : child.getLeft();
+                snapshot.starts[layoutPos] = getAnimatedTop(child);
+                snapshot.extents[layoutPos] = child.getHeight();
+            } else {
+                snapshot.crossStarts[layoutPos] = grid ? parent.getPaddingTop() : child.getTop();
+                snapshot.starts[layoutPos] = getAnimatedLeft(child);
+                snapshot.extents[layoutPos] = child.getWidth();
+            }
+
+            for (final HeaderLevel level : this.mLevels) {
+                final long[] ids = snapshot.headerIds[level.level];
+                final View[] views = level.views;
+                if (valid) {
+                    // placeholders only reserve space, they have no header to draw
+                    final long indexedId = level.index.getId(adapterPos);
+                    final long id = indexedId == UNKNOWN_ID ? RecyclerView.NO_ID : indexedId;
+                    // consecutive children mostly share their headers, only look up the cache when the id changes
+                    final boolean sameHeader = layoutPos > 0 && views[layoutPos - 1] != null && ids[layoutPos - 1] == id;
+                    views[layoutPos] = sameHeader ? views[layoutPos - 1] : getView(getHeader(parent, level, adapterPos));
+                    ids[layoutPos] = id;
+                    snapshot.hasHeader[level.level][layoutPos] = id != RecyclerView.NO_ID && hasHeader(level, adapterPos);
+                } else {
+                    views[layoutPos] = null;
+                    ids[layoutPos] = RecyclerView.NO_ID;
+                    snapshot.hasHeader[level.level][layoutPos] = false;
+                }
+                snapshot.headerExtents[level.level][layoutPos] = getExtent(views[layoutPos]);
+            }
+        }
+    }
+
+    private void drawHeader(
+            @NonNull final Canvas canvas,
+            @NonNull final View header,
+            final long id,
+            @Nullable final HeaderRasterizer rasterizer,
+            final boolean rasterize,
+            final int left,
+            final int top
+    ) {
+        canvas.save();
+        canvas.translate(left, top);
+        header.setTranslationX(left);
+        header.setTranslationY(top);
+        if (rasterizer != null && rasterize) {
+            rasterizer.draw(canvas, id, header);
+        } else {
+            // drawing live clears the dirty flag the raster relies on, so drop a stale raster now
+            if (rasterizer != null && header.isDirty()) rasterizer.invalidate(id);
+            header.draw(canvas);
+        }
+        canvas.restore();
+    }
+
+    /**
+     * @return true if headers are drawn from their rasters in the given scroll state
+     */
+    private boolean isRasterizing(final int scrollState) {
+        return (this.mRenderMode == RENDER_RASTER && scrollState != RecyclerView.SCROLL_STATE_IDLE)
+                || (this.mRenderMode == RENDER_RASTER_WHILE_SETTLING && scrollState == RecyclerView.SCROLL_STATE_SETTLING);
+    }
+
+    /**
+     * Recycles the bitmaps of all rasters, headers are drawn live until the list moves again.
+     */
+    private void releaseRasters() {
+        for (final HeaderLevel level : this.mLevels) {
+            if (level.rasterizer != null && !level.rasterizer.isEmpty()) level.rasterizer.clear();
+        }
+    }
+
+    /**
+     * Registers the section index observer on the parent's adapter and schedules the build of the
+     * indexes that are not valid. Cheap enough to be called for every layout and draw pass, the
+     * indexes are built while the main thread is idle and the passes ask the adapter for the ids
+     * of the positions they need until then.
+     */
+    private void observeAdapter(@NonNull final RecyclerView parent) {
+        if (parent != this.mRecyclerView) {
+            if (this.mRecyclerView != null) {
+                this.mRecyclerView.removeOnAttachStateChangeListener(this.mAttachListener);
+                this.mRecyclerView.removeOnScrollListener(this.mScrollListener);
+            }
+            parent.addOnAttachStateChangeListener(this.mAttachListener);
+            parent.addOnScrollListener(this.mScrollListener);
+            this.mRecyclerView = parent;
+        }
+        final RecyclerView.Adapter adapter = parent.getAdapter();
+        if (adapter != this.mObservedAdapter) {
+            stopObservingAdapter();
+            if (adapter != null) adapter.registerAdapterDataObserver(this.mDataObserver);
+            this.mObservedAdapter = adapter;
+            resetIdWindows(getItemCount());
+            // changes made while no adapter was observed are unknown
+            for (final HeaderLevel level : this.mLevels) {
+                level.cache.markAllDirty();
+            }
+        }
+        if (adapter != null) this.mIndexBuilder.schedule(adapter.getItemCount());
+    }
+
+    /**
+     * Unregisters the section index observer. The indexes cannot be patched without it, they are
+     * rebuilt once an adapter is observed again.
+     */
+    private void stopObservingAdapter() {
+        if (this.mObservedAdapter != null) {
+            this.mObservedAdapter.unregisterAdapterDataObserver(this.mDataObserver);
+            this.mObservedAdapter = null;
+        }
+        this.mIndexBuilder.cancel();
+        invalidateIndexes();
+    }
+
+    /**
+     * Drops the batched ids, called whenever the adapter data changed.
+     */
+    private void resetIdWindows(final int itemCount) {
+        for (final HeaderLevel level : this.mLevels) {
+            if (level.idWindow != null) level.idWindow.reset(itemCount);
+        }
+    }
+
+    private int getItemCount() {
+        return this.mObservedAdapter != null ? this.mObservedAdapter.getItemCount() : 0;
+    }
+
+    private void invalidateIndexes() {
+        for (final HeaderLevel level : this.mLevels) {
+            level.index.invalidate();
+        }
+    }
+
+    @NonNull
+    private HeaderLevel getLevel(final int level) {
+        if (level < 0 || level >= this.mLevels.length) {
+            throw new IllegalArgumentException("No header level " + level);
+        }
+        return this.mLevels[level];
+    }
+
+    /**
+     * check if the given item at a given adapterPosition has a header
+     *
+     * @param adapterPos the adapterPosition to check
+     * @return true if the item has a header
+     */
+    protected boolean hasHeader(final int adapterPos) {
+        return hasLevelHeader(this.mLevels[0], adapterPos);
+    }
+
+    /**
+     * @deprecated headers are laid out once per frame for all levels, this reads the start of the
+     * level 0 header of the given child from the layout of the current frame. The header views are
+     * ignored, the cached headers are measured instead. The header layout does not call this
+     * method, overriding it has no effect on where headers are drawn.
+     */
+    @Deprecated
+    protected int getHeaderTop(
+            @NonNull final RecyclerView parent,
+            @NonNull final View child,
+            @NonNull final View header,
+            @Nullable final View subHeader,
+            final int adapterPos,
+            final int layoutPos
+    ) {
+        final LayoutSnapshot snapshot = prepareFrame(parent);
+        if (layoutPos >= 0 && layoutPos < snapshot.count && snapshot.valid[layoutPos]) {
+            return snapshot.getHeaderStart(0, layoutPos);
+        }
+        final int top = getAnimatedTop(child) - getHeight(header) - getHeight(subHeader);
+        return Math.max(getMarginTopPixels(parent), top);
+    }
+
+    /**
+     * check if the given item at a given adapterPosition has a header of the given level
+     */
+    private boolean hasHeader(@NonNull final HeaderLevel level, final int adapterPos) {
+        return level.level == 0 ? hasHeader(adapterPos) : hasLevelHeader(level, adapterPos);
+    }
+
+    private boolean hasLevelHeader(@NonNull final HeaderLevel level, final int adapterPos) {
+        return level.index.hasHeader(adapterPos, getItemCount(), this.mReversed);
+    }
+
+    /**
+     * @param parent     the recyclerView
+     * @param adapterPos the adapterPosition
+     * @return the header for a given adapter position if a header exists for that position
+     */
+    @Nullable
+    protected RecyclerView.ViewHolder getHeader(@NonNull final RecyclerView parent, final int adapterPos) {
+        return getLevelHeader(parent, this.mLevels[0], adapterPos);
+    }
+
+    /**
+     * @return the header of the given level for a given adapter position if a header exists for that position
+     */
+    @Nullable
+    private RecyclerView.ViewHolder getHeader(
+            @NonNull final RecyclerView parent,
+            @NonNull final HeaderLevel level,
+            final int adapterPos
+    ) {
+        return level.level == 0 ? getHeader(parent, adapterPos) : getLevelHeader(parent, level, adapterPos);
+    }
+
+    @Nullable
+    private RecyclerView.ViewHolder getLevelHeader(
+            @NonNull final RecyclerView parent,
+            @NonNull final HeaderLevel level,
+            final int adapterPos
+    ) {
+        final long id = level.index.getId(adapterPos);
+        if (id == RecyclerView.NO_ID || id == UNKNOWN_ID) return null;
+
+        final HeaderCache.Entry<RecyclerView.ViewHolder> entry = level.cache.get(id);
+        if (this.mStats != null) this.mStats.onCacheLookup(entry != null);
+        if (entry == null) return createHeader(parent, level, id, adapterPos);
+        if (entry.dirty) rebindHeader(parent, level, entry, adapterPos);
+        return entry.value;
+    }
+
+    /**
+     * Binds a recycled header of the right level and view type to the given id, or creates a new one.
+     */
+    @NonNull
+    private RecyclerView.ViewHolder createHeader(
+            @NonNull final RecyclerView parent,
+            @NonNull final HeaderLevel level,
+            final long id,
+            final int adapterPos
+    ) {
+        final int viewType = this.mAdapter.getHeaderViewType(level.level, adapterPos);
+        RecyclerView.ViewHolder holder = level.pool.get(viewType);
+        if (holder == null) holder = createHolder(parent, level.level, viewType, id, adapterPos);
+        final View header = holder.itemView;
+
+        bindHolder(holder, level.level, adapterPos, id);
+        measureHeader(parent, header, id, adapterPos);
+        if (level.level > 0 || !this.renderInline) onHintedHeaderMeasured(parent, level.hints, viewType, header);
+        level.cache.put(id, holder, viewType, estimateSize(header));
+        return holder;
+    }
+
+    @NonNull
+    private RecyclerView.ViewHolder createHolder(
+            @NonNull final RecyclerView parent,
+            final int level,
+            final int viewType,
+            final long id,
+            final int adapterPos
+    ) {
+        final long start = isTimingWork() ? System.nanoTime() : 0;
+        final DecorationTracer tracer = this.mTracer;
+        if (tracer != null) tracer.beginSection("HeaderDecoration.create level=" + level + " id=" + id);
+
+        final RecyclerView.ViewHolder holder = this.mAdapter.onCreateHeaderViewHolder(parent, level, viewType);
+
+        if (tracer != null) tracer.endSection();
+        onWorkDone(HeaderStats.CREATE, HeaderPolicy.VIOLATION_CREATE, start, adapterPos, id);
+        return holder;
+    }
+
+    private void bindHolder(
+            @NonNull final RecyclerView.ViewHolder holder,
+            final int level,
+            final int adapterPos,
+            final long id
+    ) {
+        final long start = isTimingWork() ? System.nanoTime() : 0;
+        final DecorationTracer tracer = this.mTracer;
+        if (tracer != null) tracer.beginSection("HeaderDecoration.bind level=" + level + " id=" + id);
+
+        this.mAdapter.onBindHeaderViewHolder(holder, level, adapterPos);
+
+        if (tracer != null) tracer.endSection();
+        onWorkDone(HeaderStats.BIND, HeaderPolicy.VIOLATION_BIND, start, adapterPos, id);
+    }
+
+    private void measureHeader(
+            @NonNull final RecyclerView parent,
+            @NonNull final View header,
+            final long id,
+            final int adapterPos
+    ) {
+        final long start = isTimingWork() ? System.nanoTime() : 0;
+        final DecorationTracer tracer = this.mTracer;
+        if (tracer != null) tracer.beginSection("HeaderDecoration.measure id=" + id);
+
+        measureView(parent, header);
+
+        if (tracer != null) tracer.endSection();
+        onWorkDone(HeaderStats.MEASURE, HeaderPolicy.VIOLATION_MEASURE, start, adapterPos, id);
+    }
+
+    private boolean isTimingWork() {
+        return this.mStats != null || (this.mPolicy != null && this.mPass != PASS_NONE);
+    }
+
+    /**
+     * Records the time a header operation took and reports it to the policy if it ran inside a pass.
+     */
+    private void onWorkDone(final int operation, final int violation, final long start, final int adapterPos, final long id) {
+        if (!isTimingWork()) return;
+        final long nanos = System.nanoTime() - start;
+        if (this.mStats != null) this.mStats.record(operation, nanos);
+        if (this.mPolicy != null && this.mPass != PASS_NONE) {
+            this.mPolicy.onHeaderWork(violation, this.mPass == PASS_DRAW, adapterPos, id, nanos);
+        }
+    }
+
+    /**
+     * Starts a draw or layout pass unless one is running already, e.g. when another decoration
+     * asks for the pinned headers while drawing.
+     *
+     * @return the pass that was running before, to be passed to {@link #endPass(int)}
+     */
+    private int beginPass(final int pass) {
+        final int previous = this.mPass;
+        if (previous == PASS_NONE) {
+            this.mPass = pass;
+            this.mPassIdLookups = 0;
+        }
+        return previous;
+    }
+
+    private void endPass(final int previousPass) {
+        if (previousPass != PASS_NONE) return;
+        final boolean drawing = this.mPass == PASS_DRAW;
+        this.mPass = PASS_NONE;
+        if (this.mPolicy != null) this.mPolicy.onPassFinished(drawing, this.mPassIdLookups);
+    }
+
+    /**
+     * Marks the cached headers of a level for every section intersecting the item range as dirty,
+     * or all of them if the index is not built and it is unknown which sections the range
+     * belongs to.
+     *
+     * @return true if at least one cached header was marked
+     */
+    private boolean markDirty(@NonNull final HeaderLevel level, final int positionStart, final int itemCount) {
+        final SectionIndex index = level.index;
+        if (!index.isValid()) {
+            level.cache.markAllDirty();
+            return level.cache.size() > 0;
+        }
+
+        boolean marked = false;
+        final int end = Math.min(positionStart + itemCount, index.getItemCount());
+        int position = Math.max(positionStart, 0);
+        while (position < end) {
+            final long id = index.getId(position);
+            if (id != RecyclerView.NO_ID) marked |= level.cache.markDirty(id);
+            position = index.getNextSectionStart(position);
+            if (position == SectionIndex.NO_POSITION) break;
+        }
+        return marked;
+    }
+
+    /**
+     * Rebinds a dirty header in place and measures it again if rebinding requested a layout.
+     */
+    private void rebindHeader(
+            @NonNull final RecyclerView parent,
+            @NonNull final HeaderLevel level,
+            @NonNull final HeaderCache.Entry<RecyclerView.ViewHolder> entry,
+            final int adapterPos
+    ) {
+        bindHolder(entry.value, level.level, adapterPos, entry.id);
+        remeasure(parent, entry.value.itemView, entry.id, adapterPos);
+        level.cache.markClean(entry, estimateSize(entry.value.itemView));
+        if (level.rasterizer != null) level.rasterizer.invalidate(entry.id);
+    }
+
+    /**
+     * Measures a rebound header again if it requested a layout, and refreshes the item offsets if
+     * its size changed.
+     */
+    private void remeasure(
+            @NonNull final RecyclerView parent,
+            @NonNull final View header,
+            final long id,
+            final int adapterPos
+    ) {
+        if (!header.isLayoutRequested()) return;
+
+        final int width = header.getWidth();
+        final int height = header.getHeight();
+        measureHeader(parent, header, id, adapterPos);
+        if (header.getWidth() != width || header.getHeight() != height) postInvalidateItemDecorations(parent);
+    }
+
+    /**
+     * Refines the height hints with a newly measured header, and refreshes the item offsets if they
+     * were computed from a hint that turned out to be wrong.
+     */
+    private void onHintedHeaderMeasured(
+            @NonNull final RecyclerView parent,
+            @NonNull final HeaderHeightHints hints,
+            final int viewType,
+            @NonNull final View header
+    ) {
+        final int hint = hints.get(viewType);
+        final int extent = getExtent(header);
+        hints.onMeasured(viewType, extent);
+        if (hint != HeaderHeightHints.NO_HINT && hint != extent) postInvalidateItemDecorations(parent);
+    }
+
+    private void postInvalidateItemDecorations(@NonNull final RecyclerView parent) {
+        if (this.mInvalidateItemDecorationsPosted) return;
+        // item decorations must not be invalidated during layout or draw, so do it right after
+        this.mInvalidateItemDecorationsPosted = true;
+        parent.post(this.mInvalidateItemDecorations);
+    }
+
+    private void invalidateParent() {
+        if (this.mRecyclerView != null) this.mRecyclerView.invalidate();
+    }
+
+    /**
+     * Creates the header of the given level and position ahead of time if it is not cached yet.
+     */
+    void prefetchHeader(@NonNull final RecyclerView parent, final int adapterPos, final int level) {
+        final HeaderLevel headerLevel = this.mLevels[level];
+        final long id = headerLevel.index.getId(adapterPos);
+        if (id == RecyclerView.NO_ID || id == UNKNOWN_ID || headerLevel.cache.contains(id)) return;
+        createHeader(parent, headerLevel, id, adapterPos);
+    }
+
+    @NonNull
+    HeaderHitRegions getHitRegions() {
+        return this.mHitRegions;
+    }
+
+    /**
+     * @return true if a click listener handled the tap
+     */
+    boolean dispatchHeaderClick(
+            @NonNull final RecyclerView parent,
+            @NonNull final View header,
+            final int level,
+            final long id,
+            final int adapterPos
+    ) {
+        final OnHeaderClickListener listener = this.mOnHeaderClickListener;
+        if (listener == null) return false;
+        parent.playSoundEffect(SoundEffectConstants.CLICK);
+        listener.onHeaderClick(header, level, id, getSectionStartForPosition(level, adapterPos));
+        return true;
+    }
+
+    /**
+     * @return true if a long click listener handled the long press
+     */
+    boolean dispatchHeaderLongClick(
+            @NonNull final RecyclerView parent,
+            @NonNull final View header,
+            final int level,
+            final long id,
+            final int adapterPos
+    ) {
+        final OnHeaderLongClickListener listener = this.mOnHeaderLongClickListener;
+        if (listener == null || !listener.onHeaderLongClick(header, level, id, getSectionStartForPosition(level, adapterPos))) {
+            return false;
+        }
+        parent.performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+        return true;
+    }
+
+    /**
+     * @return the first position of the section of a level containing the given position, or the
+     * position itself if the section index is not up to date
+     */
+    private int getSectionStartForPosition(final int level, final int adapterPos) {
+        final SectionIndex index = this.mLevels[level].index;
+        if (!index.isValid() || adapterPos < 0 || adapterPos >= index.getItemCount()) return adapterPos;
+        return index.getSectionStart(index.getSectionForPosition(adapterPos));
+    }
+
+    /**
+     * @return the view type of the header with the given id, or {@link HeaderViewPool#NO_VIEW_TYPE}
+     * if no section of the level has the id
+     */
+    int getHeaderViewType(@NonNull final HeaderLevel level, final long id) {
+        final SectionIndex index = getBuiltIndex(level.level);
+        final int section = index != null ? index.findSection(id) : SectionIndex.NO_POSITION;
+        if (section == SectionIndex.NO_POSITION) return HeaderViewPool.NO_VIEW_TYPE;
+        return this.mAdapter.getHeaderViewType(level.level, index.getSectionStart(section));
+    }
+
+    @NonNull
+    SectionIndex getHeaderIndex(final int level) {
+        return this.mLevels[level].index;
+    }
+
+    /**
+     * @return true if the item at the given position is visually followed by a header of any level
+     */
+    boolean isFollowedByHeader(@NonNull final RecyclerView parent, final int adapterPos) {
+        observeAdapter(parent);
+        updateOrientation(parent);
+        final RecyclerView.Adapter adapter = parent.getAdapter();
+        final int next = this.mReversed ? adapterPos - 1 : adapterPos + 1;
+        if (adapterPos < 0 || adapter == null || next < 0 || next >= adapter.getItemCount()) return false;
+        for (final HeaderLevel level : this.mLevels) {
+            if (hasHeader(level, next)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the end of the headers pinned to the leading edge in the frame being drawn, along
+     * the scroll axis: their bottom in vertical lists and their right edge in horizontal ones.
+     * The headers of the frame are laid out if that did not happen yet, but no frame is started,
+     * so the result is only current after {@code onDraw} of this decoration ran in the frame,
+     * i.e. while drawing over the children.
+     *
+     * @return the end of the pinned headers, or 0 if no header is pinned
+     */
+    int getPinnedHeaderEnd(@NonNull final RecyclerView parent) {
+        final int previousPass = beginPass(PASS_DRAW);
+        final int pinnedEnd = prepareFrame(parent).getPinnedEnd();
+        endPass(previousPass);
+        return pinnedEnd;
+    }
+
+    /**
+     * @return true if the list was laid out vertically the last time the decoration was used
+     */
+    boolean isVertical() {
+        return this.mVertical;
+    }
+
+    /**
+     * @return true if the list laid out its last adapter position first the last time the
+     * decoration was used, because of reverseLayout or a horizontal right to left layout
+     */
+    boolean isReversed() {
+        return this.mReversed;
+    }
+
+    /**
+     * calculate the height for a given adapterPosition
+     * if the adapterPosition does not contain a header, return 0
+     *
+     * @param adapterPos the adapterPos to get the header for
+     * @return 0 if the item does not have a header, otherwise the height of the item's header
+     */
+    protected int getHeaderHeight(@NonNull final RecyclerView recyclerView, final int adapterPos) {
+        return getHeaderHeightForLayout(getHeader(recyclerView, adapterPos));
+    }
+
+    /**
+     * calculate the height for a given adapterPosition
+     * if the adapterPosition does not contain a subHeader, return 0
+     *
+     * @param adapterPos the adapterPos to get the subHeader for
+     * @return 0 if the item does not have a header, otherwise the height of the item's header
+     */
+    protected int getSubHeaderHeight(@NonNull final RecyclerView recyclerView, final int adapterPos) {
+        if (this.mLevels.length < 2) return 0;
+        return getHeight(getLevelHeader(recyclerView, this.mLevels[1], adapterPos));
+    }
+
+    /**
+     * calculate the height for a given viewHolder if it's not null, otherwise return 0
+     *
+     * @param viewHolder the viewHolder, may be null
+     * @return 0 if the viewHolder is null, otherwise the height of its itemView
+     */
+    protected int getHeight(@Nullable final RecyclerView.ViewHolder viewHolder) {
+        if (viewHolder == null) return 0;
+        return getHeight(viewHolder.itemView);
+    }
+
+    /**
+     * calculate the height for a given view if it's not null, otherwise return 0
+     *
+     * @param view the view, may be null
+     * @return 0 if the view is null, otherwise the height of the view
+     */
+    protected int getHeight(@Nullable final View view) {
+        if (view == null) return 0;
+        return view.getHeight();
+    }
+
+    /**
+     * the size of a view along the scroll axis, its height in vertical and its width in horizontal lists
+     */
+    private int getExtent(@Nullable final View view) {
+        if (view == null) return 0;
+        return this.mVertical ? view.getHeight() : view.getWidth();
+    }
+
+    private void updateOrientation(@NonNull final RecyclerView parent) {
+        final RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            final LinearLayoutManager linearLayoutManager = (LinearLayoutManager) layoutManager;
+            this.mVertical = linearLayoutManager.getOrientation() == LinearLayoutManager.VERTICAL;
+            // horizontal lists in a right to left layout lay out from the right, like a reversed list
+            final boolean rtl = linearLayoutManager.getLayoutDirection() == ViewCompat.LAYOUT_DIRECTION_RTL;
+            this.mReversed = linearLayoutManager.getReverseLayout() ^ (!this.mVertical && rtl);
+        } else {
+            this.mVertical = true;
+            this.mReversed = false;
+        }
+    }
+
+    /**
+     * estimate the memory held by a measured header, used to enforce the cache memory budget.
+     * The default assumes the header costs about as much as a 32 bit bitmap of its size.
+     *
+     * @param header the measured header view
+     * @return the estimated size of the header in bytes
+     */
+    protected int estimateSize(@NonNull final View header) {
+        return header.getMeasuredWidth() * header.getMeasuredHeight() * 4;
+    }
+
+    @Nullable
+    protected View getView(@Nullable final RecyclerView.ViewHolder viewHolder) {
+        if (viewHolder == null) return null;
+        return viewHolder.itemView;
+    }
+
+
+    protected void measureView(@NonNull final RecyclerView parent, @NonNull final View header) {
 
-        final int widthSpec = View.MeasureSpec.makeMeasureSpec(parent.getWidth(), View.MeasureSpec.EXACTLY);
-        final int heightSpec = View.MeasureSpec.makeMeasureSpec(parent.getHeight(), View.MeasureSpec.UNSPECIFIED);
+        // headers fill the list across the scroll axis and take the size they need along it
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(parent.getWidth(),
+                this.mVertical ? View.MeasureSpec.EXACTLY : View.MeasureSpec.UNSPECIFIED);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(parent.getHeight(),
+                this.mVertical ? View.MeasureSpec.UNSPECIFIED : View.MeasureSpec.EXACTLY);
 
         final int childWidth = ViewGroup.getChildMeasureSpec(
                 widthSpec, parent.getPaddingLeft() + parent.getPaddingRight(),
@@ -505,4 +1790,221 @@ protected void measureView(@NonNull final RecyclerView parent, @NonNull final Vi
 
     }
 
+    /**
+     * Exposes the span size lookup of a grid to the section index.
+     */
+    private static final class GridSpanSizes implements SectionIndex.SpanSizes {
+
+        @Nullable
+        GridLayoutManager.SpanSizeLookup lookup;
+
+        @Override
+        public int getSpanSize(final int position) {
+            return this.lookup != null ? this.lookup.getSpanSize(position) : 1;
+        }
+    }
+
+    /**
+     * The ids of the sections intersecting a range of positions, reused between notifications.
+     */
+    private static final class SectionIds {
+
+        long[] ids = new long[16];
+        int size;
+
+        /**
+         * Replaces the ids with those of the sections of a valid index intersecting the range, an
+         * invalid index has no known sections.
+         */
+        void collect(@NonNull final SectionIndex index, final int positionStart, final int itemCount) {
+            this.size = 0;
+            if (!index.isValid()) return;
+            final int end = Math.min(positionStart + itemCount, index.getItemCount());
+            int position = Math.max(positionStart, 0);
+            while (position < end) {
+                if (this.size == this.ids.length) this.ids = Arrays.copyOf(this.ids, this.size * 2);
+                this.ids[this.size++] = index.getId(position);
+                position = index.getNextSectionStart(position);
+                if (position == SectionIndex.NO_POSITION) break;
+            }
+        }
+
+        void sort() {
+            Arrays.sort(this.ids, 0, this.size);
+        }
+
+        /**
+         * @return true if the sorted ids contain the given id
+         */
+        boolean contains(final long id) {
+            return Arrays.binarySearch(this.ids, 0, this.size, id) >= 0;
+        }
+    }
+
+    /**
+     * Patches the section indexes from the adapter's change notifications, and keeps the cached
+     * headers in line with them: headers of sections touching a changed range are rebound the next
+     * time they are drawn, and headers whose sections disappeared from the range, because they
+     * were removed, changed or merged by a move, are recycled. All other headers are kept as they
+     * are.
+     */
+    private class SectionIndexObserver extends RecyclerView.AdapterDataObserver {
+
+        /* the ids of the sections of a range before and after patching it, per level */
+        private final SectionIds mPreviousIds = new SectionIds();
+        private final SectionIds mPatchedIds = new SectionIds();
+        /* whether the items of a range were laid out first in their section before a patch */
+        private boolean[] mLeading = new boolean[0];
+        private int mLeadingStart;
+        private boolean mLeadingValid;
+
+        @Override
+        public void onChanged() {
+            onDataChanged();
+            invalidateIndexes();
+            for (final HeaderLevel level : mLevels) {
+                level.cache.markAllDirty();
+            }
+        }
+
+        @Override
+        public void onItemRangeChanged(final int positionStart, final int itemCount) {
+            onDataChanged();
+            boolean boundaryChanged = false;
+            for (final HeaderLevel level : mLevels) {
+                final SectionIndex index = level.index;
+                collectLeadingItems(index, positionStart - 1, itemCount + 2);
+                mPreviousIds.collect(index, positionStart, itemCount);
+                index.onItemRangeChanged(positionStart, itemCount);
+                recycleVanishedIds(level, positionStart - 1, itemCount + 2);
+                markDirty(level, positionStart, itemCount);
+                // the items in the range are rebound anyway, only check the ones around it
+                boundaryChanged |= hasLeadingItemChanged(index, positionStart - 1, positionStart - 1)
+                        || hasLeadingItemChanged(index, positionStart + itemCount, positionStart + itemCount);
+            }
+            if (boundaryChanged && mRecyclerView != null) postInvalidateItemDecorations(mRecyclerView);
+        }
+
+        @Override
+        public void onItemRangeInserted(final int positionStart, final int itemCount) {
+            onDataChanged();
+            boolean boundaryChanged = false;
+            for (final HeaderLevel level : mLevels) {
+                final SectionIndex index = level.index;
+                collectLeadingItems(index, positionStart - 1, 2);
+                index.onItemRangeInserted(positionStart, itemCount);
+                // the sections around the inserted items may have grown
+                markDirty(level, positionStart - 1, itemCount + 2);
+                // e.g. items inserted at the head of a section take its header from the item after them
+                boundaryChanged |= hasLeadingItemChanged(index, positionStart - 1, positionStart - 1)
+                        || hasLeadingItemChanged(index, positionStart, positionStart + itemCount);
+            }
+            if (boundaryChanged && mRecyclerView != null) postInvalidateItemDecorations(mRecyclerView);
+        }
+
+        @Override
+        public void onItemRangeRemoved(final int positionStart, final int itemCount) {
+            onDataChanged();
+            boolean boundaryChanged = false;
+            for (final HeaderLevel level : mLevels) {
+                final SectionIndex index = level.index;
+                // the removed items are gone, only the items around them are checked
+                collectLeadingItems(index, positionStart - 1, 1);
+                final boolean nextLeading = isLeadingItem(index, positionStart + itemCount);
+                mPreviousIds.collect(index, positionStart, itemCount);
+                index.onItemRangeRemoved(positionStart, itemCount);
+
+                // the sections removed entirely lose their headers, the ones around the gap shrank
+                recycleVanishedIds(level, positionStart - 1, 2);
+                markDirty(level, positionStart - 1, 2);
+                boundaryChanged |= hasLeadingItemChanged(index, positionStart - 1, positionStart - 1)
+                        || nextLeading != isLeadingItem(index, positionStart);
+            }
+            if (boundaryChanged && mRecyclerView != null) postInvalidateItemDecorations(mRecyclerView);
+        }
+
+        @Override
+        public void onItemRangeMoved(final int fromPosition, final int toPosition, final int itemCount) {
+            onDataChanged();
+            final int start = Math.min(fromPosition, toPosition);
+            final int count = Math.abs(fromPosition - toPosition) + itemCount;
+            boolean boundaryChanged = false;
+            for (final HeaderLevel level : mLevels) {
+                final SectionIndex index = level.index;
+                collectLeadingItems(index, start - 1, count + 2);
+                mPreviousIds.collect(index, start, count);
+                index.onItemRangeMoved(fromPosition, toPosition, itemCount);
+                // moving an item out of a section can merge the sections around it
+                recycleVanishedIds(level, start - 1, count + 2);
+                markDirty(level, start - 1, count + 2);
+                // moved and shifted items are not rebound, check every item of the span
+                for (int position = start - 1; position <= start + count && !boundaryChanged; position++) {
+                    final int moved = getMovedPosition(position, fromPosition, toPosition, itemCount);
+                    boundaryChanged = hasLeadingItemChanged(index, position, moved);
+                }
+            }
+            if (boundaryChanged && mRecyclerView != null) postInvalidateItemDecorations(mRecyclerView);
+        }
+
+        private void onDataChanged() {
+            if (mObservedAdapter != null) resetIdWindows(mObservedAdapter.getItemCount());
+        }
+
+        /**
+         * Recycles the headers of the previous section ids that no section intersecting the given
+         * range of the patched index has anymore.
+         */
+        private void recycleVanishedIds(@NonNull final HeaderLevel level, final int positionStart, final int itemCount) {
+            if (mPreviousIds.size == 0) return;
+            mPatchedIds.collect(level.index, positionStart, itemCount);
+            mPatchedIds.sort();
+            for (int i = 0; i < mPreviousIds.size; i++) {
+                final long id = mPreviousIds.ids[i];
+                if (!mPatchedIds.contains(id)) level.recycle(id);
+            }
+        }
+
+        /**
+         * Remembers which items of a range are laid out first in their section before a patch,
+         * see {@link #hasLeadingItemChanged(SectionIndex, int, int)}.
+         */
+        private void collectLeadingItems(@NonNull final SectionIndex index, final int positionStart, final int itemCount) {
+            mLeadingStart = positionStart;
+            mLeadingValid = index.isValid();
+            if (!mLeadingValid) return;
+            if (mLeading.length < itemCount) mLeading = new boolean[Math.max(itemCount, mLeading.length * 2)];
+            for (int i = 0; i < itemCount; i++) {
+                mLeading[i] = isLeadingItem(index, positionStart + i);
+            }
+        }
+
+        /**
+         * Checks if an item that is not rebound gained or lost its header by a patch. The item
+         * offsets RecyclerView cached for it are stale then. Without a valid index before and
+         * after the patch the answer is unknown and the item counts as changed.
+         *
+         * @param index    the patched index
+         * @param previous the position of the item before the patch, collected before
+         * @param current  the position of the item after the patch
+         */
+        private boolean hasLeadingItemChanged(@NonNull final SectionIndex index, final int previous, final int current) {
+            if (!mLeadingValid || !index.isValid()) return true;
+            return mLeading[previous - mLeadingStart] != isLeadingItem(index, current);
+        }
+
+        private int getMovedPosition(final int position, final int fromPosition, final int toPosition, final int itemCount) {
+            if (position >= fromPosition && position < fromPosition + itemCount) return position - fromPosition + toPosition;
+            if (fromPosition < toPosition && position >= fromPosition + itemCount && position < toPosition + itemCount) {
+                return position - itemCount;
+            }
+            if (fromPosition > toPosition && position >= toPosition && position < fromPosition) return position + itemCount;
+            return position;
+        }
+
+        private boolean isLeadingItem(@NonNull final SectionIndex index, final int position) {
+            return position >= 0 && position < index.getItemCount()
+                    && index.isLeadingItem(position, index.getItemCount(), mReversed);
+        }
+    }
+
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.util.SparseIntArray;
+
+/**
+ * Knows the height of a header before it is created, so that item offsets can be computed without
+ * inflating and binding headers during layout.
+ * <p>
+ * A hint is either a fixed height set for a header view type, or, when estimating is enabled, the
+ * last measured height of a header of that view type.
+ * <p>
+ * Placeholders, items whose header id is not known yet, reserve a fixed placeholder height if one
+ * is set, or the last measured height of any header.
+ */
+final class HeaderHeightHints {
+
+    static final int NO_HINT = -1;
+
+    private final SparseIntArray mFixed = new SparseIntArray();
+    private final SparseIntArray mEstimated = new SparseIntArray();
+    private boolean mEstimate;
+    private int mPlaceholder = NO_HINT;
+    private int mLastMeasured = NO_HINT;
+
+    void setFixed(final int viewType, final int height) {
+        mFixed.put(viewType, height);
+    }
+
+    void setPlaceholder(final int height) {
+        mPlaceholder = height;
+    }
+
+    void setEstimate(final boolean estimate) {
+        mEstimate = estimate;
+        if (!estimate) mEstimated.clear();
+    }
+
+    /**
+     * @param viewType the header view type
+     * @return the expected header height, or {@link #NO_HINT} if it is unknown
+     */
+    int get(final int viewType) {
+        final int fixed = mFixed.get(viewType, NO_HINT);
+        if (fixed != NO_HINT || !mEstimate) return fixed;
+        return mEstimated.get(viewType, NO_HINT);
+    }
+
+    /**
+     * @return the height reserved for the header of a placeholder, 0 if no header was measured yet
+     */
+    int getPlaceholder() {
+        if (mPlaceholder != NO_HINT) return mPlaceholder;
+        return mLastMeasured != NO_HINT ? mLastMeasured : 0;
+    }
+
+    /**
+     * Refines the estimate of a view type with the height of a header that was just measured.
+     *
+     * @param viewType the header view type
+     * @param height   the measured height
+     */
+    void onMeasured(final int viewType, final int height) {
+        if (mEstimate) mEstimated.put(viewType, height);
+        mLastMeasured = height;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * The bounds of the headers drawn in the last frame, recorded in drawing order so that a touch can
+ * be matched to a header without measuring or laying out anything.
+ * <p>
+ * Only the headers that are actually drawn are recorded, which are a handful at most, and the
+ * arrays are reused between frames.
+ */
+final class HeaderHitRegions {
+
+    static final int NONE = -1;
+
+    int count;
+    View[] views = new View[0];
+    int[] levels = new int[0];
+    long[] ids = new long[0];
+    /* the adapter position of the child the header was drawn for */
+    int[] positions = new int[0];
+    private int[] mLefts = new int[0];
+    private int[] mTops = new int[0];
+    private int[] mRights = new int[0];
+    private int[] mBottoms = new int[0];
+
+    void reset() {
+        Arrays.fill(views, 0, count, null);
+        count = 0;
+    }
+
+    void add(@NonNull final View header, final int level, final long id, final int position, final int left, final int top) {
+        if (count == views.length) grow();
+        views[count] = header;
+        levels[count] = level;
+        ids[count] = id;
+        positions[count] = position;
+        mLefts[count] = left;
+        mTops[count] = top;
+        mRights[count] = left + header.getWidth();
+        mBottoms[count] = top + header.getHeight();
+        count++;
+    }
+
+    /**
+     * @return the region containing the given point, the one drawn last if regions overlap, or
+     * {@link #NONE}
+     */
+    int find(final float x, final float y) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (x >= mLefts[i] && x < mRights[i] && y >= mTops[i] && y < mBottoms[i]) return i;
+        }
+        return NONE;
+    }
+
+    private void grow() {
+        final int size = Math.max(4, count * 2);
+        views = Arrays.copyOf(views, size);
+        levels = Arrays.copyOf(levels, size);
+        ids = Arrays.copyOf(ids, size);
+        positions = Arrays.copyOf(positions, size);
+        mLefts = Arrays.copyOf(mLefts, size);
+        mTops = Arrays.copyOf(mTops, size);
+        mRights = Arrays.copyOf(mRights, size);
+        mBottoms = Arrays.copyOf(mBottoms, size);
+    }
+}
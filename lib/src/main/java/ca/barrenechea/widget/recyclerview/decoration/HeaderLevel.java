@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+/**
+ * Everything the {@link HeaderDecoration} keeps for one header level: the cached headers, the
+ * section index, the pool of recycled headers, the height hints and the rasters.
+ */
+final class HeaderLevel {
+
+    final int level;
+    @NonNull
+    final HeaderCache<RecyclerView.ViewHolder> cache = new HeaderCache<>();
+    @NonNull
+    final SectionIndex index;
+    @NonNull
+    final HeaderViewPool pool = new HeaderViewPool();
+    @NonNull
+    final HeaderHeightHints hints = new HeaderHeightHints();
+    /* batches the id lookups of batch adapters, null otherwise */
+    @Nullable
+    final IdWindow idWindow;
+    /* header rasters, only used when not rendering live */
+    @Nullable
+    HeaderRasterizer rasterizer;
+    /* the header of every child of the current frame */
+    @NonNull
+    View[] views = new View[0];
+
+    HeaderLevel(final int level, @NonNull final SectionIndex.IdSource idSource) {
+        this.level = level;
+        this.index = new SectionIndex(idSource);
+        this.idWindow = idSource instanceof IdWindow ? (IdWindow) idSource : null;
+        this.cache.setEvictionListener(new HeaderCache.EvictionListener<RecyclerView.ViewHolder>() {
+            @Override
+            public void onEvicted(final long id, final RecyclerView.ViewHolder holder, final int viewType) {
+                if (rasterizer != null) rasterizer.invalidate(id);
+                pool.put(viewType, holder);
+            }
+        });
+    }
+
+    /**
+     * Removes the header with the given id from the cache and keeps its holder for reuse.
+     */
+    void recycle(final long id) {
+        final HeaderCache.Entry<RecyclerView.ViewHolder> entry = cache.peek(id);
+        if (entry == null) return;
+        cache.remove(id);
+        if (rasterizer != null) rasterizer.invalidate(id);
+        pool.put(entry.viewType, entry.value);
+    }
+
+    /**
+     * Drops every cached, recycled and rasterized header of this level.
+     */
+    void clear() {
+        cache.clear();
+        pool.clear();
+        if (rasterizer != null) rasterizer.clear();
+    }
+}
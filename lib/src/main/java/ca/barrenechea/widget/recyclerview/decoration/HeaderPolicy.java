@@ -0,0 +1,305 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Detects header work that happens inside a draw or layout pass, where it delays the frame, like
+ * {@link android.os.StrictMode} does for disk and network access on the main thread. Meant for
+ * debug and QA builds:
+ * <pre>
+ * if (BuildConfig.DEBUG) {
+ *     decoration.setPolicy(new HeaderPolicy.Builder().detectAll().penaltyLog().build());
+ * }
+ * </pre>
+ * Headers created, bound or measured while {@code onDrawOver} or {@code getItemOffsets} runs are
+ * violations, as are more adapter id requests in a single pass than allowed. Headers prefetched
+ * while the main thread is idle are never violations.
+ */
+public final class HeaderPolicy {
+
+    /**
+     * A header view holder was created during a pass
+     */
+    public static final int VIOLATION_CREATE = 0;
+
+    /**
+     * A header was bound during a pass
+     */
+    public static final int VIOLATION_BIND = 1;
+
+    /**
+     * A header was measured during a pass
+     */
+    public static final int VIOLATION_MEASURE = 2;
+
+    /**
+     * A pass requested more header ids from the adapter than allowed
+     */
+    public static final int VIOLATION_ID_LOOKUPS = 3;
+
+    private static final String TAG = "HeaderPolicy";
+
+    /* the id requests allowed per pass by detectAll, a screen of items needs far fewer while the section index is built */
+    private static final int DEFAULT_MAX_ID_LOOKUPS = 256;
+
+    private static final int DETECT_CREATE = 1 << VIOLATION_CREATE;
+    private static final int DETECT_BIND = 1 << VIOLATION_BIND;
+    private static final int DETECT_MEASURE = 1 << VIOLATION_MEASURE;
+    private static final int DETECT_ID_LOOKUPS = 1 << VIOLATION_ID_LOOKUPS;
+
+    /**
+     * Receives every violation, e.g. to count them.
+     */
+    public interface OnViolationListener {
+        void onViolation(@NonNull Violation violation);
+    }
+
+    /**
+     * Describes a single violation.
+     */
+    public static final class Violation {
+
+        private final int mType;
+        private final boolean mDrawing;
+        private final int mPosition;
+        private final long mId;
+        private final long mNanos;
+        private final int mIdLookups;
+
+        Violation(final int type, final boolean drawing, final int position, final long id, final long nanos,
+                  final int idLookups) {
+            mType = type;
+            mDrawing = drawing;
+            mPosition = position;
+            mId = id;
+            mNanos = nanos;
+            mIdLookups = idLookups;
+        }
+
+        /**
+         * @return one of {@link #VIOLATION_CREATE}, {@link #VIOLATION_BIND},
+         * {@link #VIOLATION_MEASURE} or {@link #VIOLATION_ID_LOOKUPS}
+         */
+        public int getType() {
+            return mType;
+        }
+
+        /**
+         * @return true if the violation happened while drawing, false during layout
+         */
+        public boolean isDrawing() {
+            return mDrawing;
+        }
+
+        /**
+         * @return the adapter position of the header, or -1 for id lookup violations
+         */
+        public int getPosition() {
+            return mPosition;
+        }
+
+        /**
+         * @return the header id, or -1 for id lookup violations
+         */
+        public long getId() {
+            return mId;
+        }
+
+        /**
+         * @return the time the offending work took in nanoseconds, 0 for id lookup violations
+         */
+        public long getNanos() {
+            return mNanos;
+        }
+
+        /**
+         * @return the number of header ids requested in the pass, for id lookup violations
+         */
+        public int getIdLookups() {
+            return mIdLookups;
+        }
+
+        @Override
+        public String toString() {
+            final String pass = mDrawing ? "onDrawOver" : "getItemOffsets";
+            switch (mType) {
+                case VIOLATION_CREATE:
+                    return "Header created in " + pass + ": position=" + mPosition + " id=" + mId + " took " + mNanos + "ns";
+                case VIOLATION_BIND:
+                    return "Header bound in " + pass + ": position=" + mPosition + " id=" + mId + " took " + mNanos + "ns";
+                case VIOLATION_MEASURE:
+                    return "Header measured in " + pass + ": position=" + mPosition + " id=" + mId + " took " + mNanos + "ns";
+                default:
+                    return mIdLookups + " header ids requested from the adapter in a single " + pass;
+            }
+        }
+    }
+
+    private final int mDetect;
+    private final long mThresholdNanos;
+    private final int mMaxIdLookups;
+    private final boolean mLog;
+    private final boolean mDeath;
+    @Nullable
+    private final OnViolationListener mListener;
+
+    private HeaderPolicy(final Builder builder) {
+        mDetect = builder.mDetect;
+        mThresholdNanos = builder.mThresholdNanos;
+        mMaxIdLookups = builder.mMaxIdLookups;
+        mLog = builder.mLog;
+        mDeath = builder.mDeath;
+        mListener = builder.mListener;
+    }
+
+    /**
+     * Checks header work done during a pass.
+     *
+     * @param type one of {@link #VIOLATION_CREATE}, {@link #VIOLATION_BIND} or {@link #VIOLATION_MEASURE}
+     */
+    void onHeaderWork(final int type, final boolean drawing, final int position, final long id, final long nanos) {
+        if ((mDetect & (1 << type)) == 0 || nanos < mThresholdNanos) return;
+        onViolation(new Violation(type, drawing, position, id, nanos, 0));
+    }
+
+    /**
+     * Checks the number of header ids requested from the adapter during a pass.
+     */
+    void onPassFinished(final boolean drawing, final int idLookups) {
+        if ((mDetect & DETECT_ID_LOOKUPS) == 0 || idLookups <= mMaxIdLookups) return;
+        onViolation(new Violation(VIOLATION_ID_LOOKUPS, drawing, -1, -1, 0, idLookups));
+    }
+
+    private void onViolation(@NonNull final Violation violation) {
+        if (mListener != null) mListener.onViolation(violation);
+        if (mLog) Log.w(TAG, violation.toString());
+        if (mDeath) throw new IllegalStateException(violation.toString());
+    }
+
+    /**
+     * Builds a {@link HeaderPolicy}, nothing is detected and no penalty applied by default.
+     */
+    public static final class Builder {
+
+        private int mDetect;
+        private long mThresholdNanos;
+        private int mMaxIdLookups = Integer.MAX_VALUE;
+        private boolean mLog;
+        private boolean mDeath;
+        @Nullable
+        private OnViolationListener mListener;
+
+        /**
+         * Detects header view holders created during a pass
+         * @return the current instance of the Builder
+         */
+        public Builder detectHeaderCreation() {
+            mDetect |= DETECT_CREATE;
+            return this;
+        }
+
+        /**
+         * Detects headers bound during a pass
+         * @return the current instance of the Builder
+         */
+        public Builder detectHeaderBinding() {
+            mDetect |= DETECT_BIND;
+            return this;
+        }
+
+        /**
+         * Detects headers measured during a pass
+         * @return the current instance of the Builder
+         */
+        public Builder detectHeaderMeasuring() {
+            mDetect |= DETECT_MEASURE;
+            return this;
+        }
+
+        /**
+         * Detects passes requesting more header ids from the adapter than allowed. A batch request
+         * counts once.
+         * @param maxPerPass the number of id requests allowed in a single pass
+         * @return the current instance of the Builder
+         */
+        public Builder detectIdLookups(final int maxPerPass) {
+            if (maxPerPass < 0) throw new IllegalArgumentException("maxPerPass must not be negative");
+            mDetect |= DETECT_ID_LOOKUPS;
+            mMaxIdLookups = maxPerPass;
+            return this;
+        }
+
+        /**
+         * Detects header creation, binding and measuring, and passes requesting more than 256
+         * header ids unless a limit has been set with {@link #detectIdLookups(int)}. Passes only
+         * request the ids of the positions they lay out or draw, the section index is built while
+         * the main thread is idle, so a pass exceeding the limit scans the adapter.
+         * @return the current instance of the Builder
+         */
+        public Builder detectAll() {
+            if ((mDetect & DETECT_ID_LOOKUPS) == 0) detectIdLookups(DEFAULT_MAX_ID_LOOKUPS);
+            return detectHeaderCreation().detectHeaderBinding().detectHeaderMeasuring();
+        }
+
+        /**
+         * Only reports header creation, binding and measuring taking at least the given time
+         * @param thresholdNanos the threshold in nanoseconds, 0 reports all of them
+         * @return the current instance of the Builder
+         */
+        public Builder setThresholdNanos(final long thresholdNanos) {
+            if (thresholdNanos < 0) throw new IllegalArgumentException("thresholdNanos must not be negative");
+            mThresholdNanos = thresholdNanos;
+            return this;
+        }
+
+        /**
+         * Logs every violation
+         * @return the current instance of the Builder
+         */
+        public Builder penaltyLog() {
+            mLog = true;
+            return this;
+        }
+
+        /**
+         * Throws an {@link IllegalStateException} on the first violation
+         * @return the current instance of the Builder
+         */
+        public Builder penaltyDeath() {
+            mDeath = true;
+            return this;
+        }
+
+        /**
+         * Passes every violation to a listener
+         * @param listener the listener
+         * @return the current instance of the Builder
+         */
+        public Builder penaltyListener(@NonNull final OnViolationListener listener) {
+            mListener = listener;
+            return this;
+        }
+
+        public HeaderPolicy build() {
+            return new HeaderPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Creates and binds the headers of the sections ahead of the visible window before they scroll
+ * into view, so that inflating a header does not happen inside a layout or draw pass.
+ * <p>
+ * The prefetcher watches the scroll direction and runs while the main thread is idle, creating the
+ * headers of the next sections in the scroll direction until a time budget is used up. When the
+ * list moves fast it looks twice as far ahead.
+ */
+final class HeaderPrefetcher extends RecyclerView.OnScrollListener implements MessageQueue.IdleHandler {
+
+    /* the list counts as moving fast if it would scroll a full screen within that many frames */
+    private static final int FAST_SCROLL_FRAMES = 10;
+
+    private final HeaderDecoration mDecoration;
+
+    @Nullable
+    private RecyclerView mRecyclerView;
+    private int mCount;
+    private long mBudgetNanos;
+
+    /* 1 when scrolling towards the end of the list, -1 towards its start */
+    private int mDirection;
+    private boolean mFast;
+    private boolean mScheduled;
+
+    HeaderPrefetcher(@NonNull final HeaderDecoration decoration, final int count, final long budgetNanos) {
+        mDecoration = decoration;
+        mCount = count;
+        mBudgetNanos = budgetNanos;
+    }
+
+    void setCount(final int count) {
+        mCount = count;
+    }
+
+    void setBudgetNanos(final long budgetNanos) {
+        mBudgetNanos = budgetNanos;
+    }
+
+    /**
+     * Starts watching the given list, detaching from the previous one if needed.
+     */
+    void attach(@Nullable final RecyclerView recyclerView) {
+        if (recyclerView == mRecyclerView) return;
+        if (mRecyclerView != null) mRecyclerView.removeOnScrollListener(this);
+        mRecyclerView = recyclerView;
+        mDirection = 0;
+        if (recyclerView != null) recyclerView.addOnScrollListener(this);
+    }
+
+    void detach() {
+        attach(null);
+        if (mScheduled) {
+            Looper.myQueue().removeIdleHandler(this);
+            mScheduled = false;
+        }
+    }
+
+    @Override
+    public void onScrolled(final RecyclerView recyclerView, final int dx, final int dy) {
+        final int delta = dy != 0 ? dy : dx;
+        if (delta == 0) return;
+
+        mDirection = delta > 0 ? 1 : -1;
+        mFast = Math.abs(delta) * FAST_SCROLL_FRAMES > (dy != 0 ? recyclerView.getHeight() : recyclerView.getWidth());
+        if (!mScheduled) {
+            Looper.myQueue().addIdleHandler(this);
+            mScheduled = true;
+        }
+    }
+
+    @Override
+    public boolean queueIdle() {
+        final RecyclerView parent = mRecyclerView;
+        final boolean done = parent == null || mCount <= 0 || mDirection == 0
+                || prefetch(parent, System.nanoTime() + mBudgetNanos);
+        mScheduled = !done;
+        return mScheduled;
+    }
+
+    /**
+     * @return true if every header ahead has been prefetched, false if the budget ran out
+     */
+    private boolean prefetch(@NonNull final RecyclerView parent, final long deadline) {
+        final int anchor = findAnchorPosition(parent);
+        if (anchor == RecyclerView.NO_POSITION) return true;
+
+        // reversed lists show later adapter positions first, scrolling forward goes back in the adapter
+        final int step = mDecoration.isReversed() ? -mDirection : mDirection;
+
+        final int count = mFast ? mCount * 2 : mCount;
+        final int levelCount = mDecoration.getHeaderLevelCount();
+        for (int level = 0; level < levelCount; level++) {
+            if (!prefetch(parent, level, anchor, step, count, deadline)) return false;
+        }
+        return true;
+    }
+
+    private boolean prefetch(
+            @NonNull final RecyclerView parent,
+            final int level,
+            final int anchor,
+            final int step,
+            final int count,
+            final long deadline
+    ) {
+        final SectionIndex index = mDecoration.getHeaderIndex(level);
+        if (!index.isValid() || anchor >= index.getItemCount()) return true;
+
+        int section = index.getSectionForPosition(anchor);
+        for (int i = 0; i < count; i++) {
+            section += step;
+            if (section < 0 || section >= index.getSectionCount()) break;
+            if (System.nanoTime() > deadline) return false;
+            mDecoration.prefetchHeader(parent, index.getSectionStart(section), level);
+        }
+        return true;
+    }
+
+    /**
+     * @return the adapter position of the last visible child when scrolling towards the end, or of
+     * the first visible child when scrolling towards the start
+     */
+    private int findAnchorPosition(@NonNull final RecyclerView parent) {
+        final int childCount = parent.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final int layoutPos = mDirection > 0 ? childCount - 1 - i : i;
+            final int adapterPos = parent.getChildAdapterPosition(parent.getChildAt(layoutPos));
+            if (adapterPos != RecyclerView.NO_POSITION) return adapterPos;
+        }
+        return RecyclerView.NO_POSITION;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a bitmap of every header rasterized during the last few frames, keyed by header id.
+ * <p>
+ * A header is rendered into its bitmap the first time it is drawn and every following frame only
+ * blits the bitmap. The header is rendered again once its raster is invalidated, when the header
+ * view has been invalidated since it was last rendered, or when its size changed. Rasters of
+ * headers that have not been drawn for a few frames are dropped, so the rasters never take more
+ * memory than the headers on screen. Bitmaps of dropped rasters are kept aside and reused for
+ * headers of the same size, up to a few, the others are recycled.
+ */
+final class HeaderRasterizer {
+
+    private static final int MAX_SPARE_BITMAPS = 4;
+
+    /* rasters not drawn during that many frames are dropped */
+    private static final int KEEP_FRAMES = 3;
+
+    private final LongObjectMap<Raster> mRasters = new LongObjectMap<>();
+    /* the rasters of mRasters in no particular order, to find the ones not drawn recently */
+    private Raster[] mActive = new Raster[8];
+    private int mActiveCount;
+    private int mFrame;
+
+    private final Bitmap[] mSpareBitmaps = new Bitmap[MAX_SPARE_BITMAPS];
+    private int mSpareCount;
+
+    private final Canvas mRasterCanvas = new Canvas();
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * Starts a frame, the rasters drawn from now on are kept for the next frames.
+     */
+    void beginFrame() {
+        mFrame++;
+    }
+
+    /**
+     * Drops the rasters that have not been drawn during the last frames.
+     */
+    void endFrame() {
+        for (int i = mActiveCount - 1; i >= 0; i--) {
+            final Raster raster = mActive[i];
+            if (mFrame - raster.frame >= KEEP_FRAMES) invalidate(raster.id);
+        }
+    }
+
+    /**
+     * Draws the raster of a header at the origin of the canvas, rendering it first if needed.
+     *
+     * @param canvas the canvas to draw on, already translated to the header position
+     * @param id     the header id
+     * @param header the measured and laid out header view
+     */
+    void draw(@NonNull final Canvas canvas, final long id, @NonNull final View header) {
+        final int width = header.getWidth();
+        final int height = header.getHeight();
+        if (width <= 0 || height <= 0) return;
+
+        Raster raster = mRasters.get(id);
+        if (raster != null && (raster.bitmap.getWidth() != width || raster.bitmap.getHeight() != height)) {
+            invalidate(id);
+            raster = null;
+        }
+
+        if (raster == null) {
+            raster = new Raster(id, obtainBitmap(width, height));
+            mRasters.put(id, raster);
+            if (mActiveCount == mActive.length) mActive = Arrays.copyOf(mActive, mActiveCount * 2);
+            mActive[mActiveCount++] = raster;
+            render(raster.bitmap, header);
+        } else if (header.isDirty()) {
+            raster.bitmap.eraseColor(Color.TRANSPARENT);
+            render(raster.bitmap, header);
+        }
+        raster.frame = mFrame;
+
+        canvas.drawBitmap(raster.bitmap, 0, 0, mPaint);
+    }
+
+    /**
+     * Drops the raster of a header, it will be rendered again the next time it is drawn.
+     *
+     * @param id the header id
+     */
+    void invalidate(final long id) {
+        final Raster raster = mRasters.remove(id);
+        if (raster == null) return;
+        for (int i = 0; i < mActiveCount; i++) {
+            if (mActive[i] == raster) {
+                mActive[i] = mActive[--mActiveCount];
+                mActive[mActiveCount] = null;
+                break;
+            }
+        }
+        if (mSpareCount < MAX_SPARE_BITMAPS) {
+            mSpareBitmaps[mSpareCount++] = raster.bitmap;
+        } else {
+            raster.bitmap.recycle();
+        }
+    }
+
+    /**
+     * @return true if no bitmap is held
+     */
+    boolean isEmpty() {
+        return mActiveCount == 0 && mSpareCount == 0;
+    }
+
+    /**
+     * Drops every raster and recycles all bitmaps.
+     */
+    void clear() {
+        mRasters.clear();
+        for (int i = 0; i < mActiveCount; i++) {
+            mActive[i].bitmap.recycle();
+            mActive[i] = null;
+        }
+        mActiveCount = 0;
+        for (int i = 0; i < mSpareCount; i++) {
+            mSpareBitmaps[i].recycle();
+            mSpareBitmaps[i] = null;
+        }
+        mSpareCount = 0;
+    }
+
+    private void render(@NonNull final Bitmap raster, @NonNull final View header) {
+        mRasterCanvas.setBitmap(raster);
+        header.draw(mRasterCanvas);
+        mRasterCanvas.setBitmap(null);
+    }
+
+    @NonNull
+    private Bitmap obtainBitmap(final int width, final int height) {
+        for (int i = 0; i < mSpareCount; i++) {
+            final Bitmap bitmap = mSpareBitmaps[i];
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                mSpareBitmaps[i] = mSpareBitmaps[--mSpareCount];
+                mSpareBitmaps[mSpareCount] = null;
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    private static final class Raster {
+        final long id;
+        final Bitmap bitmap;
+        /* the frame the raster was last drawn in */
+        int frame;
+
+        Raster(final long id, final Bitmap bitmap) {
+            this.id = id;
+            this.bitmap = bitmap;
+        }
+    }
+}
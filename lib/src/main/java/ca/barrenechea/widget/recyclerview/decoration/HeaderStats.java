@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Counters describing where a {@link HeaderDecoration} spends its time, collected once enabled
+ * with {@link HeaderDecoration#setStatsEnabled(boolean)} and read with
+ * {@link HeaderDecoration#getStats()}.
+ * <p>
+ * Every operation is counted together with the nanoseconds it took. Drawing and item offsets
+ * include the header creation, binding and measuring they trigger.
+ */
+public final class HeaderStats {
+
+    /**
+     * Header view holders created by the adapter
+     */
+    public static final int CREATE = 0;
+
+    /**
+     * Headers bound or rebound by the adapter
+     */
+    public static final int BIND = 1;
+
+    /**
+     * Headers measured and laid out
+     */
+    public static final int MEASURE = 2;
+
+    /**
+     * Calls to {@code onDrawOver}
+     */
+    public static final int DRAW = 3;
+
+    /**
+     * Calls to {@code getItemOffsets}
+     */
+    public static final int ITEM_OFFSETS = 4;
+
+    private static final int OPERATION_COUNT = 5;
+
+    private final long[] mCounts = new long[OPERATION_COUNT];
+    private final long[] mNanos = new long[OPERATION_COUNT];
+
+    private long mCacheHits;
+    private long mCacheMisses;
+    private int mCachedHeaders;
+    private long mCachedBytes;
+
+    private long mFrames;
+    private long mIdLookups;
+    private long mFrameIdLookups;
+    private long mLastFrameIdLookups;
+    private long mMaxFrameIdLookups;
+
+    HeaderStats() {
+    }
+
+    HeaderStats(@NonNull final HeaderStats stats) {
+        System.arraycopy(stats.mCounts, 0, mCounts, 0, OPERATION_COUNT);
+        System.arraycopy(stats.mNanos, 0, mNanos, 0, OPERATION_COUNT);
+        mCacheHits = stats.mCacheHits;
+        mCacheMisses = stats.mCacheMisses;
+        mCachedHeaders = stats.mCachedHeaders;
+        mCachedBytes = stats.mCachedBytes;
+        mFrames = stats.mFrames;
+        mIdLookups = stats.mIdLookups;
+        mFrameIdLookups = stats.mFrameIdLookups;
+        mLastFrameIdLookups = stats.mLastFrameIdLookups;
+        mMaxFrameIdLookups = stats.mMaxFrameIdLookups;
+    }
+
+    /**
+     * @param operation one of {@link #CREATE}, {@link #BIND}, {@link #MEASURE}, {@link #DRAW} or
+     *                  {@link #ITEM_OFFSETS}
+     * @return how often the operation ran
+     */
+    public long getCount(final int operation) {
+        return mCounts[operation];
+    }
+
+    /**
+     * @param operation one of {@link #CREATE}, {@link #BIND}, {@link #MEASURE}, {@link #DRAW} or
+     *                  {@link #ITEM_OFFSETS}
+     * @return the total time spent in the operation in nanoseconds
+     */
+    public long getNanos(final int operation) {
+        return mNanos[operation];
+    }
+
+    /**
+     * @return the number of header lookups served from the cache
+     */
+    public long getCacheHits() {
+        return mCacheHits;
+    }
+
+    /**
+     * @return the number of header lookups that required a new header to be created
+     */
+    public long getCacheMisses() {
+        return mCacheMisses;
+    }
+
+    /**
+     * @return the number of headers cached when the stats were read
+     */
+    public int getCachedHeaders() {
+        return mCachedHeaders;
+    }
+
+    /**
+     * @return the estimated memory of the headers cached when the stats were read, in bytes
+     */
+    public long getCachedBytes() {
+        return mCachedBytes;
+    }
+
+    /**
+     * @return the number of frames drawn
+     */
+    public long getFrames() {
+        return mFrames;
+    }
+
+    /**
+     * @return the number of header id requests made to the adapter, a batch request counting once
+     */
+    public long getIdLookups() {
+        return mIdLookups;
+    }
+
+    /**
+     * @return the number of header id requests made to the adapter for the last frame, including
+     * the layout pass before it
+     */
+    public long getLastFrameIdLookups() {
+        return mLastFrameIdLookups;
+    }
+
+    /**
+     * @return the highest number of header id requests made to the adapter for a single frame
+     */
+    public long getMaxFrameIdLookups() {
+        return mMaxFrameIdLookups;
+    }
+
+    void record(final int operation, final long nanos) {
+        mCounts[operation]++;
+        mNanos[operation] += nanos;
+    }
+
+    void onCacheLookup(final boolean hit) {
+        if (hit) {
+            mCacheHits++;
+        } else {
+            mCacheMisses++;
+        }
+    }
+
+    void onIdLookup() {
+        mIdLookups++;
+        mFrameIdLookups++;
+    }
+
+    void onFrameDrawn() {
+        mFrames++;
+        mLastFrameIdLookups = mFrameIdLookups;
+        mMaxFrameIdLookups = Math.max(mMaxFrameIdLookups, mFrameIdLookups);
+        mFrameIdLookups = 0;
+    }
+
+    void setCacheSize(final int headers, final long bytes) {
+        mCachedHeaders = headers;
+        mCachedBytes = bytes;
+    }
+
+    void reset() {
+        Arrays.fill(mCounts, 0);
+        Arrays.fill(mNanos, 0);
+        mCacheHits = 0;
+        mCacheMisses = 0;
+        mFrames = 0;
+        mIdLookups = 0;
+        mFrameIdLookups = 0;
+        mLastFrameIdLookups = 0;
+        mMaxFrameIdLookups = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "HeaderStats{"
+                + "create=" + mCounts[CREATE] + "/" + mNanos[CREATE] + "ns"
+                + ", bind=" + mCounts[BIND] + "/" + mNanos[BIND] + "ns"
+                + ", measure=" + mCounts[MEASURE] + "/" + mNanos[MEASURE] + "ns"
+                + ", draw=" + mCounts[DRAW] + "/" + mNanos[DRAW] + "ns"
+                + ", itemOffsets=" + mCounts[ITEM_OFFSETS] + "/" + mNanos[ITEM_OFFSETS] + "ns"
+                + ", cacheHits=" + mCacheHits
+                + ", cacheMisses=" + mCacheMisses
+                + ", cachedHeaders=" + mCachedHeaders
+                + ", cachedBytes=" + mCachedBytes
+                + ", frames=" + mFrames
+                + ", idLookups=" + mIdLookups
+                + ", maxFrameIdLookups=" + mMaxFrameIdLookups
+                + '}';
+    }
+}
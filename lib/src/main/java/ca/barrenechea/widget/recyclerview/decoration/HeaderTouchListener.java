@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+/**
+ * Turns touches on the drawn headers into header clicks and long presses. Headers are not part of
+ * the view hierarchy, so a gesture starting on a header is matched against the header bounds
+ * recorded during the last frame. Such a gesture is claimed right away, so the item underneath
+ * the header never sees it and shows no pressed state or long click. Once the pointer moves past
+ * the touch slop the gesture is handed back to the list, which then scrolls as usual.
+ */
+final class HeaderTouchListener extends GestureDetector.SimpleOnGestureListener
+        implements RecyclerView.OnItemTouchListener {
+
+    private final HeaderDecoration mDecoration;
+
+    @Nullable
+    private RecyclerView mRecyclerView;
+    @Nullable
+    private GestureDetector mGestureDetector;
+    private int mTouchSlopSquare;
+
+    /* the header the current gesture started on, null if it did not start on a header */
+    @Nullable
+    private View mHeader;
+    private int mLevel;
+    private long mId;
+    private int mPosition;
+    /* where the gesture started, replayed to the list when the gesture turns into a drag */
+    private float mDownX;
+    private float mDownY;
+    private long mDownTime;
+    /* true once a long press on the header was handled, the gesture then is no drag anymore */
+    private boolean mLongPressed;
+
+    HeaderTouchListener(@NonNull final HeaderDecoration decoration) {
+        mDecoration = decoration;
+    }
+
+    /**
+     * Starts handling touches of the given list, detaching from the previous one if needed.
+     */
+    void attach(@Nullable final RecyclerView recyclerView) {
+        if (recyclerView == mRecyclerView) return;
+        if (mRecyclerView != null) mRecyclerView.removeOnItemTouchListener(this);
+        mRecyclerView = recyclerView;
+        mGestureDetector = null;
+        reset();
+        if (recyclerView != null) {
+            mGestureDetector = new GestureDetector(recyclerView.getContext(), this);
+            final int touchSlop = ViewConfiguration.get(recyclerView.getContext()).getScaledTouchSlop();
+            mTouchSlopSquare = touchSlop * touchSlop;
+            recyclerView.addOnItemTouchListener(this);
+        }
+    }
+
+    void detach() {
+        attach(null);
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(final RecyclerView recyclerView, final MotionEvent event) {
+        // gestures are claimed on down, the rest of a claimed gesture goes to onTouchEvent
+        if (mGestureDetector == null || event.getActionMasked() != MotionEvent.ACTION_DOWN) return false;
+        reset();
+
+        // a touch while the list moves stops the list, it is no tap on a header
+        if (recyclerView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE) return false;
+        final HeaderHitRegions regions = mDecoration.getHitRegions();
+        final int region = regions.find(event.getX(), event.getY());
+        if (region == HeaderHitRegions.NONE) return false;
+
+        // the regions are overwritten by the next frame, so keep what the gesture needs
+        mHeader = regions.views[region];
+        mLevel = regions.levels[region];
+        mId = regions.ids[region];
+        mPosition = regions.positions[region];
+        mDownX = event.getX();
+        mDownY = event.getY();
+        mDownTime = event.getDownTime();
+        mGestureDetector.onTouchEvent(event);
+        return true;
+    }
+
+    @Override
+    public void onTouchEvent(final RecyclerView recyclerView, final MotionEvent event) {
+        if (mGestureDetector == null || mHeader == null) return;
+        final int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_MOVE && !mLongPressed && isPastTouchSlop(event)) {
+            release(recyclerView, event);
+            return;
+        }
+
+        // a long press is detected between events, a tap while the up event is fed
+        mGestureDetector.onTouchEvent(event);
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) reset();
+    }
+
+    @Override
+    public void onRequestDisallowInterceptTouchEvent(final boolean disallowIntercept) {
+        // the items never see a gesture claimed on a header, so they cannot ask to keep it
+    }
+
+    @Override
+    public boolean onDown(final MotionEvent event) {
+        return true;
+    }
+
+    @Override
+    public boolean onSingleTapUp(final MotionEvent event) {
+        if (mHeader == null || mRecyclerView == null) return false;
+        return mDecoration.dispatchHeaderClick(mRecyclerView, mHeader, mLevel, mId, mPosition);
+    }
+
+    @Override
+    public void onLongPress(final MotionEvent event) {
+        if (mHeader == null || mRecyclerView == null) return;
+        mLongPressed = mDecoration.dispatchHeaderLongClick(mRecyclerView, mHeader, mLevel, mId, mPosition);
+    }
+
+    private boolean isPastTouchSlop(@NonNull final MotionEvent event) {
+        final float dx = event.getX() - mDownX;
+        final float dy = event.getY() - mDownY;
+        return dx * dx + dy * dy > mTouchSlopSquare;
+    }
+
+    /**
+     * Hands a gesture that turned into a drag back to the list. The list stops routing the gesture
+     * to this listener once it sees a new down event, so the down event of the gesture is replayed
+     * to it, followed by the current event, and the list scrolls by the distance moved so far.
+     */
+    private void release(@NonNull final RecyclerView recyclerView, @NonNull final MotionEvent event) {
+        // cancel the pending long press
+        final MotionEvent cancel = MotionEvent.obtain(event);
+        cancel.setAction(MotionEvent.ACTION_CANCEL);
+        if (mGestureDetector != null) mGestureDetector.onTouchEvent(cancel);
+        cancel.recycle();
+
+        final MotionEvent down = MotionEvent.obtain(mDownTime, event.getEventTime(),
+                MotionEvent.ACTION_DOWN, mDownX, mDownY, event.getMetaState());
+        reset();
+        recyclerView.onTouchEvent(down);
+        down.recycle();
+        recyclerView.onTouchEvent(event);
+    }
+
+    private void reset() {
+        mHeader = null;
+        mLongPressed = false;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps header holders that were evicted from the cache, grouped by view type, so that they can
+ * be rebound to a new header id instead of inflating a new holder. Works like
+ * {@link RecyclerView.RecycledViewPool} for headers.
+ */
+final class HeaderViewPool {
+
+    static final int DEFAULT_MAX_RECYCLED = 5;
+    /**
+     * The view type of holders that did not come from the header adapter, they are never reused.
+     */
+    static final int NO_VIEW_TYPE = -1;
+
+    private final SparseArray<ArrayList<RecyclerView.ViewHolder>> mScrap = new SparseArray<>();
+    private final SparseIntArray mMaxRecycled = new SparseIntArray();
+
+    /**
+     * @param viewType the header view type
+     * @return a recycled holder of the given type, or null if there is none
+     */
+    @Nullable
+    RecyclerView.ViewHolder get(final int viewType) {
+        final ArrayList<RecyclerView.ViewHolder> scrap = mScrap.get(viewType);
+        if (scrap == null || scrap.isEmpty()) return null;
+        return scrap.remove(scrap.size() - 1);
+    }
+
+    /**
+     * Keeps a holder for reuse, unless the pool for its type is full or its type is unknown.
+     *
+     * @param viewType the header view type
+     * @param holder   the holder that is no longer used
+     */
+    void put(final int viewType, @NonNull final RecyclerView.ViewHolder holder) {
+        if (viewType == NO_VIEW_TYPE) return;
+        ArrayList<RecyclerView.ViewHolder> scrap = mScrap.get(viewType);
+        if (scrap == null) {
+            scrap = new ArrayList<>();
+            mScrap.put(viewType, scrap);
+        }
+        if (scrap.size() < mMaxRecycled.get(viewType, DEFAULT_MAX_RECYCLED)) scrap.add(holder);
+    }
+
+    void setMaxRecycled(final int viewType, final int max) {
+        mMaxRecycled.put(viewType, max);
+        final ArrayList<RecyclerView.ViewHolder> scrap = mScrap.get(viewType);
+        while (scrap != null && scrap.size() > max) {
+            scrap.remove(scrap.size() - 1);
+        }
+    }
+
+    void clear() {
+        mScrap.clear();
+    }
+}
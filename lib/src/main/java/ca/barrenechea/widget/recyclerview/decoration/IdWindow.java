@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+/**
+ * A sliding window over the ids of a {@link BatchSource}.
+ * <p>
+ * Ids are fetched in batches around the requested position and served from the window until a
+ * position outside of it is requested. The window then slides in the direction of the request,
+ * keeping a quarter of its size behind the requested position, so walking over the adapter in
+ * either direction costs one batch fetch per window.
+ */
+final class IdWindow implements SectionIndex.IdSource {
+
+    static final int DEFAULT_SIZE = 128;
+
+    /**
+     * Provides the ids of a range of items at once.
+     */
+    interface BatchSource {
+        void getIds(int start, int count, long[] out);
+    }
+
+    private final BatchSource mSource;
+    private final long[] mIds;
+    private int mStart;
+    private int mCount;
+    private int mItemCount;
+
+    IdWindow(final BatchSource source) {
+        this(source, DEFAULT_SIZE);
+    }
+
+    IdWindow(final BatchSource source, final int size) {
+        if (size <= 0) throw new IllegalArgumentException("size must be positive");
+        mSource = source;
+        mIds = new long[size];
+    }
+
+    /**
+     * Discards the fetched ids, the data behind them changed.
+     *
+     * @param itemCount the current number of items
+     */
+    void reset(final int itemCount) {
+        mItemCount = itemCount;
+        mCount = 0;
+    }
+
+    @Override
+    public long getId(final int position) {
+        if (position < mStart || position >= mStart + mCount) fill(position);
+        return mIds[position - mStart];
+    }
+
+    private void fill(final int position) {
+        final int size = mIds.length;
+        if (position >= mItemCount) {
+            // outside of the known items, fetch just that one
+            mStart = position;
+            mCount = 1;
+        } else {
+            final int behind = position < mStart ? size - 1 - size / 4 : size / 4;
+            mStart = Math.max(0, Math.min(position - behind, mItemCount - size));
+            mCount = Math.min(size, mItemCount - mStart);
+        }
+        mSource.getIds(mStart, mCount, mIds);
+    }
+}
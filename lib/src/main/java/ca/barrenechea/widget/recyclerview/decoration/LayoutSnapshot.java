@@ -0,0 +1,250 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of the visible children taken once per frame, and the header positions of every
+ * header level computed from it.
+ * <p>
+ * The snapshot is filled in layout order by the decoration, then {@link #compute(int, boolean)}
+ * finds the headers to draw and their positions for all levels in a single linear pass. All
+ * arrays are reused between frames, so taking a snapshot does not allocate once they are large
+ * enough.
+ * <p>
+ * Positions and sizes are measured along the scroll axis, so the same computation serves vertical
+ * lists, where a start is a top and an extent a height, and horizontal lists, where a start is a
+ * left and an extent a width. Cross starts are measured along the other axis.
+ * <p>
+ * Level 0 is the outermost header level. The headers of a level are pinned below the headers of
+ * all levels above it.
+ * <p>
+ * The snapshot does not depend on the Android framework. The decoration only copies the state of
+ * the children into it and draws the headers at the computed positions, so the layout can run and
+ * be benchmarked on a plain JVM.
+ */
+final class LayoutSnapshot {
+
+    /**
+     * Mirrors {@code RecyclerView.NO_ID}, the id of items without a header.
+     */
+    static final long NO_ID = -1;
+
+    private static final int NONE = -1;
+
+    final int levelCount;
+
+    /* input, one entry per child in layout order */
+    int count;
+    /* false for children that have no adapter position, e.g. while being removed */
+    boolean[] valid = new boolean[0];
+    int[] positions = new int[0];
+    int[] crossStarts = new int[0];
+    int[] starts = new int[0];
+    int[] extents = new int[0];
+    /* input, one array per level with one entry per child */
+    final long[][] headerIds;
+    final boolean[][] hasHeader;
+    final int[][] headerExtents;
+
+    /* output, the headers of each level to draw in drawing order */
+    final int[] headerCounts;
+    final int[][] headerChildren;
+    final int[][] headerStarts;
+
+    /* the leading margin, inline mode and sticky child the headers were computed for */
+    private int mMarginStart;
+    private boolean mRenderInline;
+    private int mSticky;
+
+    /* the next valid child with a different header id, per level */
+    private final int[][] mNextHeaderChange;
+    private final boolean[] mDrawn;
+
+    LayoutSnapshot(final int levelCount) {
+        this.levelCount = levelCount;
+        headerIds = new long[levelCount][0];
+        hasHeader = new boolean[levelCount][0];
+        headerExtents = new int[levelCount][0];
+        headerCounts = new int[levelCount];
+        headerChildren = new int[levelCount][0];
+        headerStarts = new int[levelCount][0];
+        mNextHeaderChange = new int[levelCount][0];
+        mDrawn = new boolean[levelCount];
+    }
+
+    /**
+     * Prepares the snapshot for the given number of children.
+     */
+    void reset(final int count) {
+        this.count = count;
+        Arrays.fill(headerCounts, 0);
+        if (valid.length >= count) return;
+
+        valid = new boolean[count];
+        positions = new int[count];
+        crossStarts = new int[count];
+        starts = new int[count];
+        extents = new int[count];
+        for (int level = 0; level < levelCount; level++) {
+            headerIds[level] = new long[count];
+            hasHeader[level] = new boolean[count];
+            headerExtents[level] = new int[count];
+            headerChildren[level] = new int[count];
+            headerStarts[level] = new int[count];
+            mNextHeaderChange[level] = new int[count];
+        }
+    }
+
+    /**
+     * Computes which headers of every level are drawn and where.
+     * <p>
+     * The first visible child gets the sticky headers, which are pinned to the leading margin unless
+     * the next section pushes them off screen. Every other child starting a section draws its
+     * header right before itself. Headers below level 0 are only drawn for visible children.
+     *
+     * @param marginStart  the leading margin of the sticky headers in pixels
+     * @param renderInline true if the level 0 headers are drawn inline and take no layout space
+     */
+    void compute(final int marginStart, final boolean renderInline) {
+        mMarginStart = marginStart;
+        mRenderInline = renderInline;
+
+        // the sticky child is the first valid child that is still on screen
+        int sticky = count;
+        for (int i = 0; i < count; i++) {
+            if (valid[i] && starts[i] > -(renderInline ? 0 : extents[i])) {
+                sticky = i;
+                break;
+            }
+        }
+        mSticky = sticky;
+
+        // link every valid child to the next valid child whose id differs, on every level
+        int next = NONE;
+        for (int i = count - 1; i >= 0; i--) {
+            if (!valid[i]) continue;
+            for (int level = 0; level < levelCount; level++) {
+                final int[] nextChange = mNextHeaderChange[level];
+                if (next == NONE) {
+                    nextChange[i] = NONE;
+                } else {
+                    final long[] ids = headerIds[level];
+                    nextChange[i] = ids[next] != ids[i] ? next : nextChange[next];
+                }
+            }
+            next = i;
+        }
+
+        // find the headers of all levels in one pass
+        Arrays.fill(mDrawn, false);
+        for (int i = 0; i < count; i++) {
+            if (!valid[i]) continue;
+            final boolean visible = starts[i] > -extents[i];
+            for (int level = 0; level < levelCount; level++) {
+                if (level > 0 && !visible) continue;
+                if ((!mDrawn[level] || hasHeader[level][i]) && headerIds[level][i] != NO_ID) {
+                    final int n = headerCounts[level]++;
+                    headerChildren[level][n] = i;
+                    headerStarts[level][n] = getHeaderStart(level, i, i <= sticky, marginStart,
+                            renderInline && level == 0);
+                    mDrawn[level] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the child getting the sticky headers, or {@link #count} if no valid child is on screen
+     */
+    int getStickyChild() {
+        return mSticky;
+    }
+
+    /**
+     * Computes where the header of a level would be drawn for any valid child, whether or not the
+     * child starts a section.
+     *
+     * @param level the header level
+     * @param child the valid child in layout order
+     * @return the start of the header
+     */
+    int getHeaderStart(final int level, final int child) {
+        return getHeaderStart(level, child, child <= mSticky, mMarginStart, mRenderInline && level == 0);
+    }
+
+    /**
+     * @return the end of the headers pinned to the leading margin, pushed back by the next section
+     * if needed, or 0 if no header is pinned
+     */
+    int getPinnedEnd() {
+        int end = 0;
+        for (int level = 0; level < levelCount; level++) {
+            if (headerCounts[level] == 0) continue;
+            final int child = headerChildren[level][0];
+            final int start = headerStarts[level][0];
+            if (start <= getStickyStart(level, child, mMarginStart)) {
+                end = Math.max(end, start + headerExtents[level][child]);
+            }
+        }
+        return end;
+    }
+
+    /**
+     * A sticky header is pinned below the sticky headers of all levels above it. It is pushed back
+     * once the headers of the next section on its level would overlap it, which are the headers of
+     * its own and deeper levels plus those of the levels above whose id changes there as well.
+     */
+    private int getHeaderStart(
+            final int level,
+            final int child,
+            final boolean sticky,
+            final int marginStart,
+            final boolean inline
+    ) {
+        final int stickyStart = getStickyStart(level, child, marginStart);
+        if (sticky) {
+            final int next = mNextHeaderChange[level][child];
+            if (next != NONE) {
+                int headersExtent = inline ? 0 : headerExtents[level][child];
+                for (int other = 0; other < levelCount; other++) {
+                    final boolean above = other < level;
+                    if (above && headerIds[other][next] == headerIds[other][child]) continue;
+                    if (other == level && inline) continue;
+                    headersExtent += headerExtents[other][next];
+                }
+                final int offset = starts[next] - headersExtent;
+                if (offset < stickyStart) return offset;
+            }
+        }
+
+        int headersExtent = 0;
+        for (int other = level; other < levelCount; other++) {
+            headersExtent += headerExtents[other][child];
+        }
+        return Math.max(stickyStart, starts[child] - headersExtent);
+    }
+
+    private int getStickyStart(final int level, final int child, final int marginStart) {
+        int stickyStart = marginStart;
+        for (int above = 0; above < level; above++) {
+            stickyStart += headerExtents[above][child];
+        }
+        return stickyStart;
+    }
+}
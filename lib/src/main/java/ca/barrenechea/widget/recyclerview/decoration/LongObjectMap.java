@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import java.util.Arrays;
+
+/**
+ * A minimal open-addressing map from primitive {@code long} keys to objects.
+ * <p>
+ * Lookups neither box the key nor allocate, which keeps the header caches free of garbage while
+ * the list is scrolling. Collisions are resolved with linear probing and removals use backward
+ * shifting, so no tombstones are left behind. Null values are not supported.
+ *
+ * @param <V> the value type
+ */
+final class LongObjectMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private int mSize;
+    private int mMask;
+
+    LongObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    LongObjectMap(final int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the value mapped to the key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    V get(final long key) {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        int slot = slotOf(key);
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) return (V) value;
+            slot = (slot + 1) & mMask;
+        }
+        return null;
+    }
+
+    /**
+     * Maps the key to the given value, replacing any previous mapping.
+     *
+     * @param key   the key
+     * @param value the value, must not be null
+     * @return the previous value mapped to the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    V put(final long key, final V value) {
+        if (value == null) throw new IllegalArgumentException("value must not be null");
+
+        int slot = slotOf(key);
+        Object current;
+        while ((current = mValues[slot]) != null) {
+            if (mKeys[slot] == key) {
+                mValues[slot] = value;
+                return (V) current;
+            }
+            slot = (slot + 1) & mMask;
+        }
+
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        if (++mSize > (mMask + 1) >> 1) grow();
+        return null;
+    }
+
+    /**
+     * @param key the key to remove
+     * @return the value that was mapped to the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    V remove(final long key) {
+        int slot = slotOf(key);
+        Object current;
+        while ((current = mValues[slot]) != null) {
+            if (mKeys[slot] == key) {
+                shiftBack(slot);
+                mSize--;
+                return (V) current;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        return null;
+    }
+
+    void clear() {
+        Arrays.fill(mValues, null);
+        mSize = 0;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Closes the gap left at {@code slot} by moving back any entry of the following probe run that
+     * would otherwise become unreachable.
+     */
+    private void shiftBack(int slot) {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        final int mask = mMask;
+        int next = (slot + 1) & mask;
+        while (values[next] != null) {
+            final int ideal = slotOf(keys[next]);
+            // move the entry if its ideal slot does not lie cyclically in (slot, next]
+            if (((next - ideal) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[slot] = null;
+    }
+
+    private void grow() {
+        final long[] oldKeys = mKeys;
+        final Object[] oldValues = mValues;
+        allocate(oldValues.length << 1);
+        for (int i = 0; i < oldValues.length; i++) {
+            final Object value = oldValues[i];
+            if (value == null) continue;
+            int slot = slotOf(oldKeys[i]);
+            while (mValues[slot] != null) slot = (slot + 1) & mMask;
+            mKeys[slot] = oldKeys[i];
+            mValues[slot] = value;
+        }
+    }
+
+    private void allocate(final int capacity) {
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mMask = capacity - 1;
+    }
+
+    private int slotOf(final long key) {
+        // fibonacci hashing spreads sequential ids, which header ids usually are
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mMask;
+    }
+
+    private static int tableSizeFor(final int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < expectedSize << 1) capacity <<= 1;
+        return capacity;
+    }
+}
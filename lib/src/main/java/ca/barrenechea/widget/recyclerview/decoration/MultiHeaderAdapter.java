@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+/**
+ * The adapter to assist the {@link HeaderDecoration} in creating and binding the headers of any
+ * number of nested levels, e.g. year, month and day headers.
+ * <p>
+ * Level 0 is the outermost level and is drawn on top. Every level has its own header ids, view
+ * types and view holders. Items sharing the id of a level form a section of that level, and the
+ * sections of a level should be nested in the sections of the level above it.
+ * <p>
+ * {@link HeaderAdapter} and {@link DoubleHeaderAdapter} are single and two level adapters and
+ * keep working as they are.
+ */
+public interface MultiHeaderAdapter {
+
+    /**
+     * @return the number of header levels, at least one
+     */
+    int getHeaderLevelCount();
+
+    /**
+     * Returns the header id of the given level for the item at the given position.
+     *
+     * @param level    the header level
+     * @param position the item position
+     * @return the header id, {@link RecyclerView#NO_ID} if the item has no header on that level, or
+     * {@link HeaderDecoration#UNKNOWN_ID} if the item is not loaded yet, see
+     * {@link HeaderAdapter#getHeaderId(int)}
+     */
+    long getHeaderId(int level, int position);
+
+    /**
+     * Returns the view type of the header of the given level for the item at the given position.
+     * Headers of the same level and view type are recycled and rebound to other ids.
+     *
+     * @param level    the header level
+     * @param position the item position
+     * @return the header view type
+     */
+    int getHeaderViewType(int level, int position);
+
+    /**
+     * Creates a new header ViewHolder of the given level and view type.
+     *
+     * @param parent   the header's view parent
+     * @param level    the header level
+     * @param viewType the header view type
+     * @return a view holder for the created view
+     */
+    RecyclerView.ViewHolder onCreateHeaderViewHolder(ViewGroup parent, int level, int viewType);
+
+    /**
+     * Updates the header view to reflect the header data of the given level for the given position
+     *
+     * @param viewHolder the header view holder
+     * @param level      the header level
+     * @param position   the header's item position
+     */
+    void onBindHeaderViewHolder(RecyclerView.ViewHolder viewHolder, int level, int position);
+}
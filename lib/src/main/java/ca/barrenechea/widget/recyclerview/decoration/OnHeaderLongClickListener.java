@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+/**
+ * Receives long presses on the headers drawn by a {@link HeaderDecoration}.
+ */
+public interface OnHeaderLongClickListener {
+
+    /**
+     * Called when a header has been pressed and held.
+     *
+     * @param header   the header view
+     * @param level    the header level, 0 for headers and 1 for the sub-headers of a
+     *                 {@link DoubleHeaderAdapter}
+     * @param headerId the header id
+     * @param position the adapter position of the first item of the header's section
+     * @return true if the long press was handled, which plays the haptic feedback
+     */
+    boolean onHeaderLongClick(@NonNull View header, int level, long headerId, int position);
+}
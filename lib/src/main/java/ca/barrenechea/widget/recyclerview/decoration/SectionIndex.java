@@ -0,0 +1,455 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+/**
+ * A run-length index of the sections of an adapter.
+ * <p>
+ * Consecutive items sharing the same id form a section. The index stores the start position and
+ * the id of every section in two sorted primitive arrays, so looking up the id or the section of a
+ * position is a binary search instead of an adapter call. The index is built with a single pass
+ * over the adapter, which can be split into steps, and is then patched from the adapter's range
+ * notifications, querying the adapter only for the positions that changed.
+ * <p>
+ * While the index is not built, or for positions outside of it, every query falls back to the
+ * {@link IdSource}. A change notified while a build is in progress restarts the build.
+ */
+final class SectionIndex {
+
+    static final int NO_POSITION = -1;
+    /**
+     * Mirrors {@code RecyclerView.NO_ID}, the id of items without a header.
+     */
+    static final long NO_ID = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Provides the number of grid spans taken by the item at a given position.
+     */
+    interface SpanSizes {
+        int getSpanSize(int position);
+    }
+
+    /**
+     * Provides the id of the item at a given position.
+     */
+    interface IdSource {
+        long getId(int position);
+    }
+
+    private final IdSource mSource;
+
+    private int[] mStarts = new int[DEFAULT_CAPACITY];
+    private long[] mIds = new long[DEFAULT_CAPACITY];
+    private int mSectionCount;
+    private int mItemCount;
+    private boolean mValid;
+
+    /* the next position to scan and the id of the previous one while a build is in progress */
+    private boolean mBuilding;
+    private int mBuildPosition;
+    private long mBuildPreviousId;
+
+    /* scratch buffers used while patching */
+    private int[] mScratchStarts = new int[DEFAULT_CAPACITY];
+    private long[] mScratchIds = new long[DEFAULT_CAPACITY];
+
+    SectionIndex(final IdSource source) {
+        mSource = source;
+    }
+
+    boolean isValid() {
+        return mValid;
+    }
+
+    /**
+     * @return true if a build has been started and neither finished nor invalidated since
+     */
+    boolean isBuilding() {
+        return mBuilding;
+    }
+
+    /**
+     * Discards the index, it will have to be rebuilt before it is used again.
+     */
+    void invalidate() {
+        mValid = false;
+        mBuilding = false;
+        mSectionCount = 0;
+        mItemCount = 0;
+    }
+
+    /**
+     * Builds the index from scratch with one pass over the source.
+     *
+     * @param itemCount the number of items in the adapter
+     */
+    void build(final int itemCount) {
+        startBuild(itemCount);
+        buildStep(itemCount);
+    }
+
+    /**
+     * Discards the index and starts a build that is carried out by {@link #buildStep(int)}. The
+     * index stays invalid until the build has finished.
+     *
+     * @param itemCount the number of items in the adapter
+     */
+    void startBuild(final int itemCount) {
+        invalidate();
+        mItemCount = itemCount;
+        mBuilding = true;
+        mBuildPosition = 0;
+        mBuildPreviousId = 0;
+    }
+
+    /**
+     * Continues the build in progress.
+     *
+     * @param maxItems the maximum number of positions to scan
+     * @return true if the index is valid afterwards
+     */
+    boolean buildStep(final int maxItems) {
+        if (!mBuilding) return mValid;
+        final int end = (int) Math.min((long) mBuildPosition + maxItems, mItemCount);
+        long previousId = mBuildPreviousId;
+        for (int position = mBuildPosition; position < end; position++) {
+            final long id = mSource.getId(position);
+            if (position == 0 || id != previousId) {
+                insertSection(mSectionCount, position, id);
+            }
+            previousId = id;
+        }
+        mBuildPosition = end;
+        mBuildPreviousId = previousId;
+        if (end == mItemCount) {
+            mBuilding = false;
+            mValid = true;
+        }
+        return mValid;
+    }
+
+    int getItemCount() {
+        return mItemCount;
+    }
+
+    int getSectionCount() {
+        return mSectionCount;
+    }
+
+    int getSectionStart(final int section) {
+        return mStarts[section];
+    }
+
+    long getSectionId(final int section) {
+        return mIds[section];
+    }
+
+    /**
+     * Finds the first section with the given id. Ids are not sorted, so this scans the section
+     * ids, which is still far fewer steps than there are items.
+     *
+     * @param id the section id
+     * @return the index of the section, or {@link #NO_POSITION} if no section has the id
+     */
+    int findSection(final long id) {
+        for (int section = 0; section < mSectionCount; section++) {
+            if (mIds[section] == id) return section;
+        }
+        return NO_POSITION;
+    }
+
+    /**
+     * @param position the item position
+     * @return the index of the section containing the position
+     */
+    int getSectionForPosition(final int position) {
+        int low = 0;
+        int high = mSectionCount - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (mStarts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param position the item position
+     * @return the id of the item at the given position
+     */
+    long getId(final int position) {
+        if (!contains(position)) return mSource.getId(position);
+        return mIds[getSectionForPosition(position)];
+    }
+
+    /**
+     * @param position the item position
+     * @return true if the item at the given position starts a new section
+     */
+    boolean isSectionStart(final int position) {
+        if (!contains(position)) {
+            return position == 0 || mSource.getId(position) != mSource.getId(position - 1);
+        }
+        return mStarts[getSectionForPosition(position)] == position;
+    }
+
+    /**
+     * Checks if the item at the given position ends its section. While the index is not built,
+     * the source is asked for the id of the next position, which has to exist.
+     *
+     * @param position the item position
+     * @return true if the item at the given position is the last item of its section
+     */
+    boolean isSectionEnd(final int position) {
+        if (!contains(position)) return mSource.getId(position) != mSource.getId(position + 1);
+        final int next = getSectionForPosition(position) + 1;
+        return next < mSectionCount ? mStarts[next] == position + 1 : position == mItemCount - 1;
+    }
+
+    /**
+     * Checks if an item is the first of its section in layout order. Reversed lists lay out the
+     * last adapter position first, so there a section starts at its last item.
+     *
+     * @param position  the item position
+     * @param itemCount the number of items in the adapter
+     * @param reversed  true if the list is laid out from the last position to the first
+     * @return true if the item at the given position is laid out first in its section
+     */
+    boolean isLeadingItem(final int position, final int itemCount, final boolean reversed) {
+        if (!reversed) return isSectionStart(position);
+        return position + 1 >= itemCount || isSectionEnd(position);
+    }
+
+    /**
+     * Checks if a header is drawn before an item, which is the case if the item has a header id
+     * and is laid out first in its section.
+     *
+     * @param position  the item position
+     * @param itemCount the number of items in the adapter
+     * @param reversed  true if the list is laid out from the last position to the first
+     * @return true if the item at the given position gets a header
+     */
+    boolean hasHeader(final int position, final int itemCount, final boolean reversed) {
+        return getId(position) != NO_ID && isLeadingItem(position, itemCount, reversed);
+    }
+
+    /**
+     * Finds the start of the section of a grid cell if the cell is in the first row of its
+     * section. Sections are assumed to start at the first column, so the cell is in the first row
+     * if the span sizes from the section start up to the cell fit into one row. That takes at most
+     * span count steps, the span index of the cell is never computed.
+     *
+     * @param position  the cell position
+     * @param spanCount the number of spans of a row
+     * @param spanSizes the span size of every position
+     * @return the section start, or {@link #NO_POSITION} if the cell is in a later row
+     */
+    int getFirstRowSectionStart(final int position, final int spanCount, final SpanSizes spanSizes) {
+        int spans = 0;
+        for (int p = position; p >= 0; p--) {
+            spans += spanSizes.getSpanSize(p);
+            if (spans > spanCount) return NO_POSITION;
+            if (isSectionStart(p)) return p;
+        }
+        return NO_POSITION;
+    }
+
+    /**
+     * @param position the item position
+     * @return the start position of the section following the given position, or
+     * {@link #NO_POSITION} if the position is in the last section
+     */
+    int getNextSectionStart(final int position) {
+        if (!contains(position)) return NO_POSITION;
+        final int next = getSectionForPosition(position) + 1;
+        return next < mSectionCount ? mStarts[next] : NO_POSITION;
+    }
+
+    void onItemRangeChanged(final int positionStart, final int itemCount) {
+        if (!canPatch(itemCount)) return;
+        rescan(positionStart, positionStart + itemCount - 1);
+    }
+
+    void onItemRangeInserted(final int positionStart, final int itemCount) {
+        if (!canPatch(itemCount)) return;
+        for (int i = lowerBound(positionStart); i < mSectionCount; i++) {
+            mStarts[i] += itemCount;
+        }
+        mItemCount += itemCount;
+        rescan(positionStart, positionStart + itemCount - 1);
+    }
+
+    void onItemRangeRemoved(final int positionStart, final int itemCount) {
+        if (!canPatch(itemCount)) return;
+        final int end = positionStart + itemCount;
+        final boolean hasNext = end < mItemCount;
+        final long nextId = hasNext ? getId(end) : 0;
+
+        final int from = lowerBound(positionStart);
+        final int to = lowerBound(end);
+        removeSections(from, to);
+        for (int i = from; i < mSectionCount; i++) {
+            mStarts[i] -= itemCount;
+        }
+        mItemCount -= itemCount;
+
+        // the first item after the removed range may start, continue or merge a section now
+        if (hasNext) setSectionStart(positionStart, nextId);
+    }
+
+    void onItemRangeMoved(final int fromPosition, final int toPosition, final int itemCount) {
+        if (!canPatch(itemCount)) return;
+        // moving items leaves every position outside of the affected span untouched
+        final int start = Math.min(fromPosition, toPosition);
+        final int end = Math.max(fromPosition, toPosition) + itemCount - 1;
+        rescan(start, end);
+    }
+
+    /**
+     * @return true if a change of the given size has to be patched into the index, a build in
+     * progress is cancelled since the positions it already scanned may have moved
+     */
+    private boolean canPatch(final int itemCount) {
+        if (mBuilding && itemCount > 0) invalidate();
+        return mValid && itemCount > 0;
+    }
+
+    private boolean contains(final int position) {
+        return mValid && position >= 0 && position < mItemCount;
+    }
+
+    /**
+     * Recomputes the section starts for the given range of positions, querying the source for the
+     * ids in the range only. The index must be correct outside of the range.
+     */
+    private void rescan(int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, mItemCount - 1);
+        if (from > to) return;
+
+        final boolean hasNext = to + 1 < mItemCount;
+        final long nextId = hasNext ? getId(to + 1) : 0;
+        long previousId = from > 0 ? getId(from - 1) : 0;
+
+        ensureScratchCapacity(to - from + 2);
+        int count = 0;
+        for (int position = from; position <= to; position++) {
+            final long id = mSource.getId(position);
+            if (position == 0 || id != previousId) {
+                mScratchStarts[count] = position;
+                mScratchIds[count] = id;
+                count++;
+            }
+            previousId = id;
+        }
+        if (hasNext && nextId != previousId) {
+            mScratchStarts[count] = to + 1;
+            mScratchIds[count] = nextId;
+            count++;
+        }
+
+        final int first = lowerBound(from);
+        final int last = lowerBound(hasNext ? to + 2 : to + 1);
+        replaceSections(first, last, count);
+    }
+
+    /**
+     * Makes the given position start a section with the given id, or merges it into the previous
+     * section if that one has the same id.
+     */
+    private void setSectionStart(final int position, final long id) {
+        final int index = lowerBound(position);
+        final boolean exists = index < mSectionCount && mStarts[index] == position;
+        final boolean starts = position == 0 || mIds[index - 1] != id;
+        if (starts && exists) {
+            mIds[index] = id;
+        } else if (starts) {
+            insertSection(index, position, id);
+        } else if (exists) {
+            removeSections(index, index + 1);
+        }
+    }
+
+    /**
+     * @return the index of the first section starting at or after the given position
+     */
+    private int lowerBound(final int position) {
+        int low = 0;
+        int high = mSectionCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mStarts[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void insertSection(final int index, final int start, final long id) {
+        ensureCapacity(mSectionCount + 1);
+        System.arraycopy(mStarts, index, mStarts, index + 1, mSectionCount - index);
+        System.arraycopy(mIds, index, mIds, index + 1, mSectionCount - index);
+        mStarts[index] = start;
+        mIds[index] = id;
+        mSectionCount++;
+    }
+
+    private void removeSections(final int from, final int to) {
+        System.arraycopy(mStarts, to, mStarts, from, mSectionCount - to);
+        System.arraycopy(mIds, to, mIds, from, mSectionCount - to);
+        mSectionCount -= to - from;
+    }
+
+    /**
+     * Replaces the sections in [from, to) with the first {@code count} scratch sections.
+     */
+    private void replaceSections(final int from, final int to, final int count) {
+        final int tail = mSectionCount - to;
+        final int newCount = from + count + tail;
+        ensureCapacity(newCount);
+        System.arraycopy(mStarts, to, mStarts, from + count, tail);
+        System.arraycopy(mIds, to, mIds, from + count, tail);
+        System.arraycopy(mScratchStarts, 0, mStarts, from, count);
+        System.arraycopy(mScratchIds, 0, mIds, from, count);
+        mSectionCount = newCount;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= mStarts.length) return;
+        final int newCapacity = Math.max(capacity, mStarts.length * 2);
+        final int[] starts = new int[newCapacity];
+        final long[] ids = new long[newCapacity];
+        System.arraycopy(mStarts, 0, starts, 0, mSectionCount);
+        System.arraycopy(mIds, 0, ids, 0, mSectionCount);
+        mStarts = starts;
+        mIds = ids;
+    }
+
+    private void ensureScratchCapacity(final int capacity) {
+        if (capacity <= mScratchStarts.length) return;
+        final int newCapacity = Math.max(capacity, mScratchStarts.length * 2);
+        mScratchStarts = new int[newCapacity];
+        mScratchIds = new long[newCapacity];
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.NonNull;
+
+/**
+ * Builds the section indexes of the header levels while the main thread is idle, a few hundred
+ * positions at a time, so that a large adapter is never scanned inside a layout or draw pass.
+ * Until an index is built its queries fall back to the adapter for the positions they need.
+ */
+final class SectionIndexBuilder implements MessageQueue.IdleHandler {
+
+    /* the number of positions scanned between two checks of the deadline */
+    private static final int STEP_ITEMS = 256;
+
+    @NonNull
+    private final SectionIndex[] mIndexes;
+    private final long mBudgetNanos;
+    private boolean mScheduled;
+
+    SectionIndexBuilder(@NonNull final SectionIndex[] indexes, final long budgetNanos) {
+        mIndexes = indexes;
+        mBudgetNanos = budgetNanos;
+    }
+
+    /**
+     * Starts building every index that is neither valid nor being built for the given item count,
+     * and schedules the build. Cheap enough to be called for every layout and draw pass.
+     *
+     * @param itemCount the number of items in the adapter
+     */
+    void schedule(final int itemCount) {
+        boolean pending = false;
+        for (final SectionIndex index : mIndexes) {
+            if (index.isValid()) continue;
+            if (!index.isBuilding() || index.getItemCount() != itemCount) index.startBuild(itemCount);
+            pending = true;
+        }
+        if (pending && !mScheduled) {
+            Looper.myQueue().addIdleHandler(this);
+            mScheduled = true;
+        }
+    }
+
+    /**
+     * Completes the build of every index right away, for callers that need the whole index.
+     *
+     * @param itemCount the number of items in the adapter
+     */
+    void finish(final int itemCount) {
+        for (final SectionIndex index : mIndexes) {
+            if (index.isValid()) continue;
+            if (!index.isBuilding() || index.getItemCount() != itemCount) index.startBuild(itemCount);
+            index.buildStep(itemCount);
+        }
+    }
+
+    void cancel() {
+        if (mScheduled) {
+            Looper.myQueue().removeIdleHandler(this);
+            mScheduled = false;
+        }
+    }
+
+    @Override
+    public boolean queueIdle() {
+        final long deadline = System.nanoTime() + mBudgetNanos;
+        boolean done = true;
+        for (final SectionIndex index : mIndexes) {
+            // indexes invalidated by a change are started again by the next schedule call
+            while (index.isBuilding()) {
+                if (index.buildStep(STEP_ITEMS)) break;
+                if (System.nanoTime() > deadline) {
+                    done = false;
+                    break;
+                }
+            }
+            if (!done) break;
+        }
+        mScheduled = !done;
+        return mScheduled;
+    }
+}
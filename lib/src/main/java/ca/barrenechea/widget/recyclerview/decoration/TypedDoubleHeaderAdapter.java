@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+/**
+ * A {@link DoubleHeaderAdapter} with more than one kind of header and sub-header view. Headers and
+ * sub-headers of the same view type are recycled by the {@link HeaderDecoration} and rebound to
+ * other ids.
+ * <p>
+ * The {@link HeaderDecoration} creates sub-headers through
+ * {@link #onCreateSubHeaderHolder(ViewGroup, int)} only, the variant without a view type is not
+ * called for typed adapters.
+ *
+ * @param <H> the header view holder
+ * @param <S> the sub-header view holder
+ */
+public interface TypedDoubleHeaderAdapter<H extends RecyclerView.ViewHolder, S extends RecyclerView.ViewHolder>
+        extends DoubleHeaderAdapter<H, S>, TypedHeaderAdapter<H> {
+
+    /**
+     * Returns the view type of the sub-header for the item at the given position.
+     *
+     * @param position the item position
+     * @return the sub-header view type
+     */
+    int getSubHeaderViewType(int position);
+
+    /**
+     * Creates a new sub-header ViewHolder of the given view type.
+     *
+     * @param parent   the sub-header's view parent
+     * @param viewType the sub-header view type
+     * @return a view holder for the created sub-header view
+     */
+    S onCreateSubHeaderHolder(ViewGroup parent, int viewType);
+}
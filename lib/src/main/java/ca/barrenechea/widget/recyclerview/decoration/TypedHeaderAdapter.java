@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+/**
+ * A {@link HeaderAdapter} with more than one kind of header view. Headers of the same view type
+ * are recycled by the {@link HeaderDecoration} and rebound to other header ids.
+ * <p>
+ * The {@link HeaderDecoration} creates headers through
+ * {@link #onCreateHeaderViewHolder(ViewGroup, int)} only, the variant without a view type is not
+ * called for typed adapters.
+ *
+ * @param <T> the header view holder
+ */
+public interface TypedHeaderAdapter<T extends RecyclerView.ViewHolder> extends HeaderAdapter<T> {
+
+    /**
+     * Returns the view type of the header for the item at the given position.
+     *
+     * @param position the item position
+     * @return the header view type
+     */
+    int getHeaderViewType(int position);
+
+    /**
+     * Creates a new header ViewHolder of the given view type.
+     *
+     * @param parent   the header's view parent
+     * @param viewType the header view type
+     * @return a view holder for the created view
+     */
+    T onCreateHeaderViewHolder(ViewGroup parent, int viewType);
+
+}
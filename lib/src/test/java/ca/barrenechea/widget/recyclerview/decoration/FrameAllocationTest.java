@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that the platform independent part of a scroll frame, looking up the header ids and the
+ * cached headers of the visible children and laying out the headers, allocates nothing once the
+ * headers on screen are cached.
+ */
+public class FrameAllocationTest {
+
+    private static final int ITEM_COUNT = 10000;
+    private static final int SECTION_SIZE = 10;
+    private static final int CHILD_COUNT = 12;
+    private static final int CHILD_EXTENT = 100;
+    /* the frames scroll back and forth over the first items, whose headers are all cached */
+    private static final int SCROLL_RANGE = 200;
+    private static final int FRAMES = 10000;
+
+    private final SectionIndex mIndex = new SectionIndex(new SectionIndex.IdSource() {
+        @Override
+        public long getId(final int position) {
+            return position / SECTION_SIZE;
+        }
+    });
+    private final HeaderCache<Object> mCache = new HeaderCache<>();
+    private final LayoutSnapshot mSnapshot = new LayoutSnapshot(1);
+
+    @Test
+    public void steadyScrollFramesDoNotAllocate() throws Exception {
+        final AllocationCounter counter = AllocationCounter.create();
+        assumeTrue("the JVM does not count allocated bytes per thread", counter != null);
+
+        mIndex.build(ITEM_COUNT);
+        for (long id = 0; id <= (SCROLL_RANGE + CHILD_COUNT) / SECTION_SIZE; id++) {
+            mCache.put(id, new Object(), 0, 1);
+        }
+        mCache.setMaxEntries(SCROLL_RANGE);
+
+        // warm up, also gives the JIT the chance to compile the frame
+        for (int frame = 0; frame < FRAMES; frame++) {
+            drawFrame(frame);
+        }
+
+        final long start = counter.getAllocatedBytes();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            drawFrame(frame);
+        }
+        final long allocated = counter.getAllocatedBytes() - start - counter.getOverhead();
+
+        // any allocation in a frame takes at least an object header, less than a byte per frame is none
+        assertTrue(allocated + " bytes allocated in " + FRAMES + " frames", allocated < FRAMES);
+    }
+
+    private void drawFrame(final int frame) {
+        final int pixels = frame * 7 % (SCROLL_RANGE * CHILD_EXTENT);
+        final int first = pixels / CHILD_EXTENT;
+        final int offset = pixels % CHILD_EXTENT;
+
+        mCache.beginFrame();
+        mSnapshot.reset(CHILD_COUNT);
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            final int position = first + i;
+            final long id = mIndex.getId(position);
+            assertNotNull(mCache.get(id));
+            mSnapshot.valid[i] = true;
+            mSnapshot.positions[i] = position;
+            mSnapshot.starts[i] = i * CHILD_EXTENT - offset;
+            mSnapshot.extents[i] = CHILD_EXTENT;
+            mSnapshot.headerIds[0][i] = id;
+            mSnapshot.hasHeader[0][i] = mIndex.isLeadingItem(position, ITEM_COUNT, false);
+            mSnapshot.headerExtents[0][i] = 40;
+        }
+        mSnapshot.compute(0, false);
+        mSnapshot.getPinnedEnd();
+    }
+
+    /**
+     * Reads the bytes allocated by the current thread from the HotSpot thread bean. The Android
+     * stubs do not contain the management API, so it is looked up reflectively.
+     */
+    private static final class AllocationCounter {
+
+        private final Object mBean;
+        private final Method mMethod;
+        private final Object[] mArgs = {Thread.currentThread().getId()};
+        private long mOverhead = Long.MAX_VALUE;
+
+        private AllocationCounter(final Object bean, final Method method) {
+            mBean = bean;
+            mMethod = method;
+        }
+
+        static AllocationCounter create() {
+            try {
+                final Object bean = Class.forName("java.lang.management.ManagementFactory")
+                        .getMethod("getThreadMXBean").invoke(null);
+                final Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+                if (!type.isInstance(bean)) return null;
+                final AllocationCounter counter = new AllocationCounter(bean, type.getMethod("getThreadAllocatedBytes", long.class));
+                // reading the counter allocates itself, measure how much once reflection has warmed up
+                for (int i = 0; i < 1000; i++) {
+                    final long before = counter.getAllocatedBytes();
+                    counter.mOverhead = Math.min(counter.mOverhead, counter.getAllocatedBytes() - before);
+                }
+                return counter.mOverhead >= 0 ? counter : null;
+            } catch (final Exception e) {
+                return null;
+            }
+        }
+
+        long getAllocatedBytes() throws Exception {
+            return (Long) mMethod.invoke(mBean, mArgs);
+        }
+
+        long getOverhead() {
+            return mOverhead;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HeaderCacheTest {
+
+    private HeaderCache<String> mCache;
+    private List<Long> mEvicted;
+
+    @Before
+    public void setUp() {
+        mCache = new HeaderCache<>();
+        mEvicted = new ArrayList<>();
+        mCache.setEvictionListener(new HeaderCache.EvictionListener<String>() {
+            @Override
+            public void onEvicted(final long id, final String value, final int viewType) {
+                assertEquals("v" + id, value);
+                assertEquals(id * 10, viewType);
+                mEvicted.add(id);
+            }
+        });
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        mCache.setMaxEntries(3);
+        put(0, 1, 2);
+        unpin();
+
+        assertNotNull(mCache.get(0));
+        put(3);
+
+        assertEquals(3, mCache.size());
+        assertEquals(1, mCache.evictionCount());
+        assertEquals(1L, (long) mEvicted.get(0));
+        assertFalse(mCache.contains(1));
+        assertTrue(mCache.contains(0));
+        assertTrue(mCache.contains(2));
+    }
+
+    @Test
+    public void neverEvictsEntriesOfTheCurrentOrPreviousFrame() {
+        put(0, 1, 2);
+        mCache.setMaxEntries(1);
+        assertEquals(3, mCache.size());
+
+        mCache.beginFrame();
+        mCache.get(1);
+        mCache.setMaxEntries(1);
+        assertEquals(3, mCache.size());
+
+        // 0 and 2 were last used two frames ago, 1 during the previous frame
+        mCache.beginFrame();
+        mCache.setMaxEntries(1);
+        assertEquals(1, mCache.size());
+        assertTrue(mCache.contains(1));
+        assertEquals(2, mEvicted.size());
+    }
+
+    @Test
+    public void respectsTheByteBudget() {
+        mCache.put(0, "v0", 0, 100);
+        mCache.put(1, "v1", 10, 100);
+        mCache.put(2, "v2", 20, 100);
+        assertEquals(300, mCache.bytes());
+        unpin();
+
+        mCache.setMaxBytes(250);
+        assertEquals(2, mCache.size());
+        assertEquals(200, mCache.bytes());
+        assertFalse(mCache.contains(0));
+
+        // a rebound header that grew can push others out
+        final HeaderCache.Entry<String> entry = mCache.peek(2);
+        mCache.markClean(entry, 200);
+        assertEquals(1, mCache.size());
+        assertEquals(200, mCache.bytes());
+        assertTrue(mCache.contains(2));
+    }
+
+    @Test
+    public void replacingAnIdKeepsOneEntry() {
+        mCache.put(7, "v7", 70, 10);
+        mCache.put(7, "v7", 70, 30);
+        assertEquals(1, mCache.size());
+        assertEquals(30, mCache.bytes());
+        assertTrue(mEvicted.isEmpty());
+    }
+
+    @Test
+    public void tracksDirtyEntries() {
+        put(0, 1);
+        assertFalse(mCache.markDirty(5));
+        assertTrue(mCache.markDirty(0));
+        assertTrue(mCache.peek(0).dirty);
+        assertFalse(mCache.peek(1).dirty);
+
+        mCache.markAllDirty();
+        assertTrue(mCache.peek(1).dirty);
+
+        final HeaderCache.Entry<String> entry = mCache.peek(0);
+        mCache.markClean(entry, 1);
+        assertFalse(entry.dirty);
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        put(0);
+        assertNotNull(mCache.get(0));
+        assertNull(mCache.get(1));
+        assertTrue(mCache.contains(0));
+        assertNotNull(mCache.peek(0));
+        assertEquals(1, mCache.hitCount());
+        assertEquals(1, mCache.missCount());
+    }
+
+    @Test
+    public void clearDropsEverythingWithoutEvicting() {
+        put(0, 1, 2);
+        mCache.clear();
+        assertEquals(0, mCache.size());
+        assertEquals(0, mCache.bytes());
+        assertNull(mCache.peek(1));
+        assertTrue(mEvicted.isEmpty());
+    }
+
+    private void put(final long... ids) {
+        for (final long id : ids) {
+            mCache.put(id, "v" + id, (int) id * 10, 1);
+        }
+    }
+
+    /* entries are pinned during the frame they were used in and the next one */
+    private void unpin() {
+        mCache.beginFrame();
+        mCache.beginFrame();
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LayoutSnapshotTest {
+
+    private static final int HEADER = 40;
+    private static final int SUB_HEADER = 20;
+
+    @Test
+    public void pinsTheHeaderOfTheFirstVisibleChild() {
+        final LayoutSnapshot snapshot = new LayoutSnapshot(1);
+        setChildren(snapshot, new int[]{-30, 20, 200}, new long[]{1, 1, 2});
+        snapshot.compute(0, false);
+
+        assertHeaders(snapshot, 0, new int[]{0, 2}, new int[]{0, 200 - HEADER});
+        assertEquals(HEADER, snapshot.getPinnedEnd());
+    }
+
+    @Test
+    public void nextSectionPushesThePinnedHeader() {
+        final LayoutSnapshot snapshot = new LayoutSnapshot(1);
+        setChildren(snapshot, new int[]{-30, 20, 70}, new long[]{1, 1, 2});
+        snapshot.compute(0, false);
+
+        // the next header starts at 30, the pinned header ends there
+        assertHeaders(snapshot, 0, new int[]{0, 2}, new int[]{30 - HEADER, 30});
+        assertEquals(30, snapshot.getPinnedEnd());
+    }
+
+    @Test
+    public void pinsBelowTheMargin() {
+        final LayoutSnapshot snapshot = new LayoutSnapshot(1);
+        setChildren(snapshot, new int[]{-30, 20}, new long[]{1, 1});
+        snapshot.compute(15, false);
+
+        assertHeaders(snapshot, 0, new int[]{0}, new int[]{15});
+        assertEquals(15 + HEADER, snapshot.getPinnedEnd());
+    }
+
+    @Test
+    public void pinsSubHeadersBelowTheHeaders() {
+        final LayoutSnapshot snapshot = new LayoutSnapshot(2);
+        setChildren(snapshot, new int[]{-30, 20, 70}, new long[]{1, 1, 1}, new long[]{5, 5, 6});
+        snapshot.compute(10, false);
+
+        assertHeaders(snapshot, 0, new int[]{0}, new int[]{10});
+        // the next sub-header starts at 50, right below the pinned header
+        assertHeaders(snapshot, 1, new int[]{0, 2}, new int[]{50 - SUB_HEADER, 50});
+        assertEquals(10 + HEADER, snapshot.getPinnedEnd());
+    }
+
+    @Test
+    public void skipsChildrenWithoutAdapterPosition() {
+        final LayoutSnapshot snapshot = new LayoutSnapshot(1);
+        setChildren(snapshot, new int[]{-30, 20, 70}, new long[]{1, 1, 2});
+        snapshot.valid[0] = false;
+        snapshot.compute(0, false);
+
+        // the sticky header moves to the next valid child and is still pushed by the next section
+        assertHeaders(snapshot, 0, new int[]{1, 2}, new int[]{30 - HEADER, 30});
+    }
+
+    @Test
+    public void matchesTheReferenceLayout() {
+        final Random random = new Random(3);
+        final LayoutSnapshot snapshot = new LayoutSnapshot(2);
+        final int[] children = new int[16];
+        final int[] starts = new int[16];
+        for (int round = 0; round < 100000; round++) {
+            final boolean inline = random.nextBoolean();
+            final int margin = random.nextBoolean() ? 0 : random.nextInt(30);
+            randomChildren(random, snapshot, random.nextInt(12));
+            snapshot.compute(margin, inline);
+
+            final Reference reference = new Reference(snapshot, margin, inline);
+            for (int level = 0; level < 2; level++) {
+                final int count = reference.layout(level, children, starts);
+                final String message = "round " + round + " level " + level;
+                assertEquals(message, count, snapshot.headerCounts[level]);
+                for (int i = 0; i < count; i++) {
+                    assertEquals(message, children[i], snapshot.headerChildren[level][i]);
+                    assertEquals(message, starts[i], snapshot.headerStarts[level][i]);
+                }
+            }
+            for (int i = 0; i < snapshot.count; i++) {
+                if (!snapshot.valid[i]) continue;
+                final String message = "round " + round + " child " + i;
+                assertEquals(message, reference.isFirstValidChild(i), i <= snapshot.getStickyChild());
+                assertEquals(message, reference.getHeaderTop(i), snapshot.getHeaderStart(0, i));
+            }
+        }
+    }
+
+    private static void setChildren(final LayoutSnapshot snapshot, final int[] starts, final long[]... ids) {
+        snapshot.reset(starts.length);
+        for (int i = 0; i < starts.length; i++) {
+            snapshot.valid[i] = true;
+            snapshot.positions[i] = i;
+            snapshot.starts[i] = starts[i];
+            snapshot.extents[i] = (i + 1 < starts.length ? starts[i + 1] : starts[i] + 50) - starts[i];
+            for (int level = 0; level < ids.length; level++) {
+                snapshot.headerIds[level][i] = ids[level][i];
+                snapshot.hasHeader[level][i] = i == 0 || ids[level][i] != ids[level][i - 1];
+                snapshot.headerExtents[level][i] = level == 0 ? HEADER : SUB_HEADER;
+            }
+        }
+    }
+
+    private static void randomChildren(final Random random, final LayoutSnapshot snapshot, final int count) {
+        snapshot.reset(count);
+        int start = -random.nextInt(80);
+        long header = random.nextInt(3) - 1;
+        long subHeader = random.nextInt(3) - 1;
+        for (int i = 0; i < count; i++) {
+            final int extent = 10 + random.nextInt(40);
+            snapshot.valid[i] = random.nextInt(8) != 0;
+            snapshot.starts[i] = start + random.nextInt(20);
+            snapshot.extents[i] = extent;
+            start += extent;
+            if (random.nextInt(3) == 0) header = random.nextInt(4) - 1;
+            if (random.nextInt(2) == 0) subHeader = random.nextInt(5) - 1;
+            final long[] ids = {header, subHeader};
+            for (int level = 0; level < 2; level++) {
+                final long id = snapshot.valid[i] ? ids[level] : LayoutSnapshot.NO_ID;
+                snapshot.headerIds[level][i] = id;
+                snapshot.hasHeader[level][i] = random.nextBoolean();
+                snapshot.headerExtents[level][i] = id == LayoutSnapshot.NO_ID ? 0 : (level == 0 ? 20 + 3 * (int) id : 10 + (int) id);
+            }
+        }
+    }
+
+    private static void assertHeaders(
+            final LayoutSnapshot snapshot,
+            final int level,
+            final int[] children,
+            final int[] starts
+    ) {
+        final int count = snapshot.headerCounts[level];
+        final int[] actualChildren = new int[count];
+        final int[] actualStarts = new int[count];
+        for (int i = 0; i < count; i++) {
+            actualChildren[i] = snapshot.headerChildren[level][i];
+            actualStarts[i] = snapshot.headerStarts[level][i];
+        }
+        assertArrayEquals("children of level " + level, children, actualChildren);
+        assertArrayEquals("starts of level " + level, starts, actualStarts);
+    }
+
+    /**
+     * The header and sub-header layout as the decoration computed it per child before the
+     * snapshot existed, looking ahead from every child for the next section.
+     */
+    private static final class Reference {
+
+        private final LayoutSnapshot mSnapshot;
+        private final int mMargin;
+        private final boolean mInline;
+
+        Reference(final LayoutSnapshot snapshot, final int margin, final boolean inline) {
+            mSnapshot = snapshot;
+            mMargin = margin;
+            mInline = inline;
+        }
+
+        int layout(final int level, final int[] children, final int[] starts) {
+            final LayoutSnapshot s = mSnapshot;
+            int count = 0;
+            for (int i = 0; i < s.count; i++) {
+                if (!s.valid[i] || s.headerIds[level][i] == LayoutSnapshot.NO_ID) continue;
+                if (level > 0 && s.starts[i] <= -s.extents[i]) continue;
+                if (count > 0 && !s.hasHeader[level][i]) continue;
+                children[count] = i;
+                starts[count] = level == 0 ? getHeaderTop(i) : getSubHeaderTop(i);
+                count++;
+            }
+            return count;
+        }
+
+        private boolean isFirstValidChild(final int child) {
+            final LayoutSnapshot s = mSnapshot;
+            for (int other = child - 1; other >= 0; other--) {
+                if (s.valid[other] && s.starts[other] > -(mInline ? 0 : s.extents[other])) return false;
+            }
+            return true;
+        }
+
+        private int getHeaderHeight(final int child) {
+            return mInline ? 0 : mSnapshot.headerExtents[0][child];
+        }
+
+        private int getHeaderTop(final int child) {
+            final LayoutSnapshot s = mSnapshot;
+            final int top = s.starts[child] - s.headerExtents[0][child] - s.headerExtents[1][child];
+            if (isFirstValidChild(child)) {
+                for (int next = child + 1; next < s.count; next++) {
+                    if (!s.valid[next] || s.headerIds[0][next] == s.headerIds[0][child]) continue;
+                    final int headerHeight = getHeaderHeight(child) + getHeaderHeight(next);
+                    final int offset = s.starts[next] - headerHeight - s.headerExtents[1][next];
+                    if (offset < mMargin) return offset;
+                    break;
+                }
+            }
+            return Math.max(mMargin, top);
+        }
+
+        private int getSubHeaderTop(final int child) {
+            final LayoutSnapshot s = mSnapshot;
+            final int pinned = mMargin + s.headerExtents[0][child];
+            final int top = s.starts[child] - s.headerExtents[1][child];
+            if (isFirstValidChild(child)) {
+                for (int next = child + 1; next < s.count; next++) {
+                    if (!s.valid[next] || s.headerIds[1][next] == s.headerIds[1][child]) continue;
+                    int headerHeight = s.headerExtents[1][child] + s.headerExtents[1][next];
+                    if (s.headerIds[0][next] != s.headerIds[0][child]) headerHeight += s.headerExtents[0][next];
+                    final int offset = s.starts[next] - headerHeight;
+                    if (offset < pinned) return offset;
+                    break;
+                }
+            }
+            return Math.max(pinned, top);
+        }
+    }
+}
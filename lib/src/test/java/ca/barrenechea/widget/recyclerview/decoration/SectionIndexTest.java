@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 Christian Ringshofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ca.barrenechea.widget.recyclerview.decoration;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SectionIndexTest {
+
+    private final List<Long> mIds = new ArrayList<>();
+    private int mLookups;
+
+    private final SectionIndex mIndex = new SectionIndex(new SectionIndex.IdSource() {
+        @Override
+        public long getId(final int position) {
+            mLookups++;
+            return mIds.get(position);
+        }
+    });
+
+    @Test
+    public void buildsSections() {
+        setIds(1, 1, 2, 2, 2, -1, 1);
+        mIndex.build(mIds.size());
+
+        assertTrue(mIndex.isValid());
+        assertEquals(4, mIndex.getSectionCount());
+        assertSections(0, 1, 2, 2, 5, -1, 6, 1);
+        assertEquals(1, mIndex.getSectionForPosition(4));
+        assertEquals(1, mIndex.findSection(2));
+        assertEquals(SectionIndex.NO_POSITION, mIndex.findSection(3));
+        assertEquals(5, mIndex.getNextSectionStart(3));
+        assertEquals(SectionIndex.NO_POSITION, mIndex.getNextSectionStart(6));
+    }
+
+    @Test
+    public void answersFromTheIndexOnceBuilt() {
+        setIds(1, 1, 2, 2, 3);
+        mIndex.build(mIds.size());
+        mLookups = 0;
+        for (int position = 0; position < mIds.size(); position++) {
+            mIndex.getId(position);
+            mIndex.isSectionStart(position);
+            mIndex.isLeadingItem(position, mIds.size(), true);
+        }
+        assertEquals(0, mLookups);
+    }
+
+    @Test
+    public void fallsBackToTheSourceUntilBuilt() {
+        setIds(1, 1, 2, 2, 3);
+        mIndex.startBuild(mIds.size());
+        mIndex.buildStep(2);
+        assertFalse(mIndex.isValid());
+        assertTrue(mIndex.isBuilding());
+
+        final boolean[] starts = {true, false, true, false, true};
+        for (int position = 0; position < mIds.size(); position++) {
+            assertEquals(mIds.get(position).longValue(), mIndex.getId(position));
+            assertEquals(starts[position], mIndex.isSectionStart(position));
+        }
+        assertTrue(mIndex.isLeadingItem(1, mIds.size(), true));
+        assertFalse(mIndex.isLeadingItem(0, mIds.size(), true));
+    }
+
+    @Test
+    public void buildsInSteps() {
+        final Random random = new Random(5);
+        for (int round = 0; round < 500; round++) {
+            randomIds(random, random.nextInt(300));
+            final SectionIndex expected = new SectionIndex(new SectionIndex.IdSource() {
+                @Override
+                public long getId(final int position) {
+                    return mIds.get(position);
+                }
+            });
+            expected.build(mIds.size());
+
+            mIndex.startBuild(mIds.size());
+            while (!mIndex.buildStep(1 + random.nextInt(20))) {
+                assertTrue(mIndex.isBuilding());
+            }
+            assertFalse(mIndex.isBuilding());
+            assertEquals(expected.getSectionCount(), mIndex.getSectionCount());
+            for (int section = 0; section < expected.getSectionCount(); section++) {
+                assertEquals(expected.getSectionStart(section), mIndex.getSectionStart(section));
+                assertEquals(expected.getSectionId(section), mIndex.getSectionId(section));
+            }
+        }
+    }
+
+    @Test
+    public void changesCancelABuildInProgress() {
+        setIds(1, 1, 2, 2, 3);
+        mIndex.startBuild(mIds.size());
+        mIndex.buildStep(2);
+        mIndex.onItemRangeInserted(0, 1);
+        assertFalse(mIndex.isBuilding());
+        assertFalse(mIndex.isValid());
+    }
+
+    @Test
+    public void findsTheFirstRowOfGridSections() {
+        setIds(1, 1, 1, 1, 1, 2, 2);
+        mIndex.build(mIds.size());
+        final SectionIndex.SpanSizes spanSizes = new SectionIndex.SpanSizes() {
+            @Override
+            public int getSpanSize(final int position) {
+                return position == 1 ? 2 : 1;
+            }
+        };
+        // three spans: 0 and 1 fill the first row of section 1, 2 to 4 the second
+        assertEquals(0, mIndex.getFirstRowSectionStart(1, 3, spanSizes));
+        assertEquals(SectionIndex.NO_POSITION, mIndex.getFirstRowSectionStart(2, 3, spanSizes));
+        assertEquals(5, mIndex.getFirstRowSectionStart(6, 3, spanSizes));
+    }
+
+    @Test
+    public void patchesMatchARebuild() {
+        final Random random = new Random(7);
+        for (int round = 0; round < 2000; round++) {
+            randomIds(random, random.nextInt(30));
+            mIndex.build(mIds.size());
+            for (int step = 0; step < 40; step++) {
+                applyRandomChange(random);
+                assertMatchesIds("round " + round + " step " + step);
+            }
+        }
+    }
+
+    private void applyRandomChange(final Random random) {
+        final int size = mIds.size();
+        switch (random.nextInt(4)) {
+            case 0: {
+                final int start = random.nextInt(size + 1);
+                final int count = 1 + random.nextInt(5);
+                for (int i = 0; i < count; i++) mIds.add(start, (long) random.nextInt(4));
+                mIndex.onItemRangeInserted(start, count);
+                break;
+            }
+            case 1: {
+                if (size == 0) return;
+                final int start = random.nextInt(size);
+                final int count = 1 + random.nextInt(Math.min(5, size - start));
+                for (int i = 0; i < count; i++) mIds.remove(start);
+                mIndex.onItemRangeRemoved(start, count);
+                break;
+            }
+            case 2: {
+                if (size == 0) return;
+                final int start = random.nextInt(size);
+                final int count = 1 + random.nextInt(Math.min(5, size - start));
+                for (int i = 0; i < count; i++) mIds.set(start + i, (long) random.nextInt(4));
+                mIndex.onItemRangeChanged(start, count);
+                break;
+            }
+            default: {
+                if (size < 2) return;
+                final int from = random.nextInt(size);
+                final int to = random.nextInt(size);
+                mIds.add(to, mIds.remove(from));
+                mIndex.onItemRangeMoved(from, to, 1);
+                break;
+            }
+        }
+    }
+
+    private void assertMatchesIds(final String message) {
+        assertTrue(message, mIndex.isValid());
+        assertEquals(message, mIds.size(), mIndex.getItemCount());
+        int section = 0;
+        for (int position = 0; position < mIds.size(); position++) {
+            final long id = mIds.get(position);
+            final boolean start = position == 0 || id != mIds.get(position - 1);
+            if (start) {
+                assertEquals(message, position, mIndex.getSectionStart(section));
+                assertEquals(message, id, mIndex.getSectionId(section));
+                section++;
+            }
+            assertEquals(message, start, mIndex.isSectionStart(position));
+            assertEquals(message, id, mIndex.getId(position));
+        }
+        assertEquals(message, section, mIndex.getSectionCount());
+    }
+
+    private void assertSections(final long... startsAndIds) {
+        for (int i = 0; i < startsAndIds.length; i += 2) {
+            assertEquals(startsAndIds[i], mIndex.getSectionStart(i / 2));
+            assertEquals(startsAndIds[i + 1], mIndex.getSectionId(i / 2));
+        }
+    }
+
+    private void setIds(final long... ids) {
+        mIds.clear();
+        for (final long id : ids) mIds.add(id);
+    }
+
+    private void randomIds(final Random random, final int count) {
+        final long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i == 0 || random.nextInt(4) == 0 ? random.nextInt(4) : ids[i - 1];
+        }
+        setIds(ids);
+    }
+}
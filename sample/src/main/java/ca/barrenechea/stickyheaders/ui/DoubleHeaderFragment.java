@@ -16,13 +16,16 @@
 
 package ca.barrenechea.stickyheaders.ui;
 
+import android.support.annotation.NonNull;
 import android.support.v7.widget.RecyclerView;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
 
 import ca.barrenechea.stickyheaders.R;
 import ca.barrenechea.stickyheaders.widget.DoubleHeaderTestAdapter;
 import ca.barrenechea.widget.recyclerview.decoration.HeaderDecoration;
+import ca.barrenechea.widget.recyclerview.decoration.OnHeaderClickListener;
 
 public class DoubleHeaderFragment extends BaseDecorationFragment {
 
@@ -34,6 +37,13 @@ public class DoubleHeaderFragment extends BaseDecorationFragment {
     protected void setAdapterAndDecor(RecyclerView list) {
         final DoubleHeaderTestAdapter adapter = new DoubleHeaderTestAdapter(this.getActivity());
         decor = new HeaderDecoration(adapter);
+        // tapping a header scrolls its section right below the pinned headers, the list has top padding
+        decor.setOnHeaderClickListener(new OnHeaderClickListener() {
+            @Override
+            public void onHeaderClick(@NonNull View header, int level, long headerId, int position) {
+                decor.scrollToHeader(level, headerId);
+            }
+        });
         setHasOptionsMenu(true);
 
         this.list = list;